@@ -1,10 +1,9 @@
 package si.zitnik.research.sna.software
 
-import network.NetworkBuilder
-import util.{DatasetWriter, SoftwareFileUtil, SourceFinder}
-import si.zitnik.research.sna.software.enum.SourceLocations
-import scala.util.matching.Regex
-import io.Source
+import network.{EdgeSink, FanOutEdgeSink, FileEdgeSink, CountingEdgeSink, NetworkBuilder}
+import model.SoftwareFile
+import util.{AuthorRules, DatasetWriter}
+import si.zitnik.research.sna.software.enum.{GraphFormat, NetworkOutputMode, SourceLocations}
 import collection.mutable.ArrayBuffer
 import com.typesafe.scalalogging.slf4j.Logging
 import collection.mutable
@@ -17,77 +16,57 @@ import collection.mutable
  * To change this template use File | Settings | File Templates.
  */
 object AuthorExtractor extends Logging {
+  //formats the EDGES network is also exported in, e.g. Seq(GraphFormat.GEXF)
+  val graphFormats = Seq[GraphFormat.Value]()
+
+  //package and author of every class, as vertex attributes of exported networks
+  def vertexAttributes(dataset: SourceLocations.Value, files: Seq[SoftwareFile]): Seq[(String, String => String)] = {
+    val rules = AuthorRules(dataset)
+    val packages = files.map(file => (file.canonicalClassName, file.packageName)).toMap
+    val authors = files.map(file => (file.canonicalClassName, rules.resolve(file.canonicalClassName, file.author))).toMap
+    Seq(("package", packages.getOrElse(_, "")), ("author", authors.getOrElse(_, AuthorRules.Unknown)))
+  }
 
-  private def extractAuthors(dataset: SourceLocations.Value) {
+  //the output rule of the project picks GROUPS, writing each clique of same-author classes once instead of all of its edges
+  def extractAuthors(dataset: SourceLocations.Value, files: Seq[SoftwareFile]) {
     val dsName = dataset.toString
 
     logger.info("Doing project: %s".format(dsName))
-    val allSources = SourceFinder.findFiles(dsName)
+    val rules = AuthorRules(dataset)
     var unknownCounter = 0
     val datasetValues = ArrayBuffer[(String, String)]()
     val authors = mutable.HashSet[String]()
 
-    allSources.foreach(filename => {
-      //println(filename)
-      val fileSource = Source.fromFile(filename, "latin1").getLines().mkString("\n") //latin1 does not have invalid codes
-      //println("\t"+SoftwareFileUtil.extractPackage(fileSource))
-      //println("\t"+SoftwareFileUtil.extractClassName(filename))
-      //println("\t"+SoftwareFileUtil.extractAuthor(fileSource))
-
-      var author = SoftwareFileUtil.extractAuthor(fileSource).trim.replaceAll("<.*?>", "")
-      val className = "%s.%s".format(SoftwareFileUtil.extractPackage(fileSource), SoftwareFileUtil.extractClassName(filename))
-
-      //EXCEPTIONS
-      if (dataset.equals(SourceLocations.MIKIOBRAUN_JBLAS_6668AC9)) {
-        val exceptionSet = Set("org.jblas.Eigen", "org.jblas.SimpleBlas")
-        if (exceptionSet.contains(className)) {
-          author += "|Nicolas Oury"
-        }
-        if (author.equals("IntelliJ IDEA.")) {
-          author = "mikio"
-        }
-      } else if (dataset.equals(SourceLocations.JUNG2_2_0_1)) {
-        if (author.equals("the JUNG Project and the Regents of the University")) {
-          author = "UNKNOWN"
-        }
-      } else if (dataset.equals(SourceLocations.JDK_1_8_0)) {
-        if (author.equals("2011") || author.equals("2012")) {
-          author = "UNKNOWN"
-        }
-        if (className.equals("javax.xml.bind.util.JAXBSource") ||
-            className.equals("javax.xml.bind.util.JAXBResult") ||
-            className.equals("javax.xml.bind.SchemaOutputResolver") ||
-          className.equals("javax.xml.bind.helpers.AbstractUnmarshallerImpl")) {
-          author = "Kohsuke Kawaguchi"
-        }
-        if (className.equals("javax.xml.bind.Binder")) {
-          author = "Kohsuke Kawaguchi|Joseph Fialli"
-        }
-      } else if (dataset.equals(SourceLocations.LUCENE_4_1_0)) {
-        if (author.equals("may not be used to endorse or promote products")) {
-          author = "Anders Moeller"
-        }
-      }
-
-      if (author.equals("\"")) {
-        author = "UNKNOWN"
-      }
+    files.foreach(file => {
+      val className = file.canonicalClassName
+      val author = rules.resolve(className, file.author)
 
       datasetValues += ((className, author))
       authors.add(author)
 
-      if (author.equals("UNKNOWN")) {
+      if (author.equals(AuthorRules.Unknown)) {
         //println(filename)
         unknownCounter += 1
       }
     })
 
-    val networkValues = NetworkBuilder.buildNetworkFulltextMatch(datasetValues)
-    DatasetWriter.writeLines(
-      "result/NETWORK_AUTHORS_%s.txt".format(dsName.replaceFirst(SourceLocations.location, "").replaceAll("/.*", "")),
-      networkValues.map(v => "%s %s".format(v._1, v._2)),
-      "#CANONICAL_CLASS_NAME CANONICAL_CLASS_NAME")
-    logger.info("\tNetwork: %d connections".format(networkValues.size))
+    if (rules.outputMode == NetworkOutputMode.GROUPS) {
+      val groups = NetworkBuilder.buildGroupsFulltextMatch(datasetValues)
+      DatasetWriter.writeLines(
+        "result/GROUPS_AUTHORS_%s.txt".format(dsName.replaceFirst(SourceLocations.location, "").replaceAll("/.*", "")),
+        groups.map(_.mkString(" ")),
+        "#CANONICAL_CLASS_NAME CANONICAL_CLASS_NAME ...")
+      logger.info("\tNetwork: %d groups, %d connections".format(groups.size, groups.map(group => group.size.toLong * (group.size - 1) / 2).sum))
+    } else {
+      val counter = new CountingEdgeSink()
+      val name = "result/NETWORK_AUTHORS_%s".format(dsName.replaceFirst(SourceLocations.location, "").replaceAll("/.*", ""))
+      val exports = if (graphFormats.isEmpty) Seq[EdgeSink]() else {
+        val attributes = vertexAttributes(dataset, files)
+        graphFormats.map(DatasetWriter.graphSink(name, _, attributes))
+      }
+      NetworkBuilder.buildNetworkFulltextMatch(datasetValues, new FanOutEdgeSink(Seq(new FileEdgeSink(name + ".txt"), counter) ++ exports: _*))
+      logger.info("\tNetwork: %d connections".format(counter.count))
+    }
 
     DatasetWriter.writeLines(
       "result/AUTHORS_%s.txt".format(dsName.replaceFirst(SourceLocations.location, "").replaceAll("/.*", "")),
@@ -100,15 +79,13 @@ object AuthorExtractor extends Logging {
   }
 
 
+  private def extractAuthors(dataset: SourceLocations.Value, workers: Int) {
+    extractAuthors(dataset, ExtractionPipeline.extractFiles(dataset, workers = workers))
+  }
+
+
   def main(args: Array[String]) {
-    extractAuthors(SourceLocations.VUZE_4901_02)
-    extractAuthors(SourceLocations.MIKIOBRAUN_JBLAS_6668AC9)
-    extractAuthors(SourceLocations.LUCENE_4_1_0)
-    extractAuthors(SourceLocations.COLT)
-    extractAuthors(SourceLocations.HADOOP_2_0_3_alpha)
-    extractAuthors(SourceLocations.JBULLET_20101010) //Martin Dvorak is possibly jezek as has mail jezek2.
-    extractAuthors(SourceLocations.JUNG2_2_0_1)
-    extractAuthors(SourceLocations.JDK_1_8_0)
+    ProjectScheduler.run(SourceLocations.values.toSeq)(extractAuthors(_, _))
   }
 
 }
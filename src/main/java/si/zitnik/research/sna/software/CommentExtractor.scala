@@ -1,12 +1,14 @@
 package si.zitnik.research.sna.software
 
-import network.NetworkBuilder
-import util.{DatasetWriter, SoftwareFileUtil, SourceFinder}
-import si.zitnik.research.sna.software.enum.SourceLocations
-import io.Source
+import network._
+import model.{CommentCorpus, SoftwareFile}
+import util.{DatasetReader, DatasetWriter}
+import si.zitnik.research.sna.software.enum.{GraphFormat, NetworkFormat, SourceLocations}
 import collection.mutable.ArrayBuffer
 import com.typesafe.scalalogging.slf4j.Logging
 import collection.mutable
+import java.io.File
+import java.nio.file.{Paths, Files}
 
 /**
  * Created with IntelliJ IDEA.
@@ -16,71 +18,160 @@ import collection.mutable
  * To change this template use File | Settings | File Templates.
  */
 object CommentExtractor extends Logging {
+  val minMatches = 1 to 10
+  val jaccardThresholds = 0.3 to 1.0 by 0.1
+  val cosineThresholds = 0.3 to 1.0 by 0.1
+  //SCORED writes one network file per measure, BINARY networks keep the scores, shared word counts exactly
+  val networkFormat = NetworkFormat.SCORED
+  //formats the networks of the lowest thresholds are also exported in, weighted by their scores, e.g. Seq(GraphFormat.GEXF)
+  val graphFormats = Seq[GraphFormat.Value]()
+
+  //version of the network scores and files, raised when either changes so updates do not keep edges of older networks
+  val networkVersion = 2
+
+  //(label, threshold) of the networks of each measure, labels as in the file names of the networks
+  private val bowIndex = minMatches.map(minMatch => ("%d".format(minMatch), minMatch.toDouble)).toList
+  private val jaccardIndex = jaccardThresholds.map(scoreThreshold => ("%.2f".format(scoreThreshold), scoreThreshold)).toList
+  private val cosineIndex = cosineThresholds.map(scoreThreshold => ("%.2f".format(scoreThreshold), scoreThreshold)).toList
+
+  //(canonical class name, processed comments) of every source file of the project
+  def extractDatasetValues(dataset: SourceLocations.Value) = {
+    toDatasetValues(ExtractionPipeline.extractFiles(dataset))
+  }
+
+  private def toDatasetValues(files: Seq[SoftwareFile]) = {
+    files.map(file => (file.canonicalClassName, file.comments)).to[ArrayBuffer]
+  }
+
+  def extractComments(dataset: SourceLocations.Value, files: Seq[SoftwareFile]) {
+    logger.info("Doing project: %s".format(dataset.toString))
+    val datasetValues = toDatasetValues(files)
+
+    writeComments(dataset, datasetValues, graphAttributes(dataset, files), NetworkBuilder.buildNetworkSweep(CommentCorpus(datasetValues), _))
+  }
+
+  //Like extractComments, only classes whose comments differ from the last written COMMENTS file are extracted and scored again,
+  //the other edges are taken from the last written network files with their scores, see NetworkBuilder.updateNetworkSweep
+  def updateComments(dataset: SourceLocations.Value, workers: Int = Runtime.getRuntime.availableProcessors()) {
+    val dsName = dataset.toString.replaceFirst(SourceLocations.location, "").replaceAll("/.*", "")
+    val files = ExtractionPipeline.extractFiles(dataset, workers = workers)
+
+    //the lowest threshold of each measure holds the edges of all others
+    val previousNetworks = if (networkFormat == NetworkFormat.SCORED) Seq(
+      "result/NETWORK_BOW_%s.txt".format(dsName),
+      "result/NETWORK_BOWJaccard_%s.txt".format(dsName),
+      "result/NETWORK_TFIDFCosine_%s.txt".format(dsName))
+    else Seq(
+      DatasetWriter.networkFile("result/NETWORK_BOW_%d_%s".format(minMatches.min, dsName), networkFormat),
+      DatasetWriter.networkFile("result/NETWORK_BOWJaccard_%s_%s".format(jaccardIndex.minBy(_._2)._1, dsName), networkFormat),
+      DatasetWriter.networkFile("result/NETWORK_TFIDFCosine_%s_%s".format(cosineIndex.minBy(_._2)._1, dsName), networkFormat))
+
+    //only networks of a completed run of this version are updated
+    val complete = DatasetReader.readLines(completionFile(dsName)) == Some(ArrayBuffer(networkStamp))
+    if (!complete) {
+      logger.info("No complete networks of this version for %s".format(dataset.toString))
+    }
+
+    //scores the networks keep exactly: all scores of scored networks, the shared word counts of binary ones
+    val exactScores = Seq(networkFormat != NetworkFormat.TEXT, networkFormat == NetworkFormat.SCORED, networkFormat == NetworkFormat.SCORED)
+
+    DatasetReader.readQuoted("result/COMMENTS_%s.txt".format(dsName)) match {
+      case Some(previousValues) if complete && previousNetworks.forall(new File(_).isFile) => {
+        logger.info("Updating project: %s".format(dataset.toString))
+        val datasetValues = toDatasetValues(files)
+        val previousEdges = previousNetworks.zip(exactScores).map({ case (filename, exact) => (edge: (String, String, Double) => Unit) => {
+          DatasetReader.foreachEdge(filename)((source, target, score) => edge(source, target, if (exact) score else Double.NaN))
+          ()
+        }})
+        val previous = new PreviousNetworks(previousEdges(0), previousEdges(1), previousEdges(2))
+        writeComments(dataset, datasetValues, graphAttributes(dataset, files), NetworkBuilder.updateNetworkSweep(CommentCorpus(previousValues), previous, CommentCorpus(datasetValues), _))
+      }
+      case _ => extractComments(dataset, files)
+    }
+  }
+
+  //vertex attributes of the graph exports, only computed when there are any
+  private def graphAttributes(dataset: SourceLocations.Value, files: Seq[SoftwareFile]) = {
+    if (graphFormats.isEmpty) Seq[(String, String => String)]() else AuthorExtractor.vertexAttributes(dataset, files)
+  }
+
+  //written last, after the networks and COMMENTS of a run, and removed before they are written again
+  private def completionFile(dsName: String) = "result/NETWORKS_%s.done".format(dsName)
 
-  private def extractComments(dataset: SourceLocations.Value) {
-    val dsName = dataset.toString
-
-    logger.info("Doing project: %s".format(dsName))
-    val allSources = SourceFinder.findFiles(dsName)
-    val datasetValues = ArrayBuffer[(String, String)]()
-
-    allSources.foreach(filename => {
-      //println(filename)
-      val fileSource = Source.fromFile(filename, "latin1").getLines().mkString("\n") //latin1 does not have invalid codes
-
-      var comments = SoftwareFileUtil.extractComments(fileSource).trim.replaceAll("<.*?>", "")
-      val className = "%s.%s".format(SoftwareFileUtil.extractPackage(fileSource), SoftwareFileUtil.extractClassName(filename))
-
-      //println(comments)
-
-      datasetValues += ((className, comments))
-    })
-
-    (1 to 10).foreach(minMatch => {
-      val networkValues = NetworkBuilder.buildNetworkBOW(datasetValues, minMatch)
-      DatasetWriter.writeLines(
-        "result/NETWORK_BOW_%d_%s.txt".format(minMatch, dsName.replaceFirst(SourceLocations.location, "").replaceAll("/.*", "")),
-        networkValues.map(v => "%s %s".format(v._1, v._2)),
-        "#CANONICAL_CLASS_NAME CANONICAL_CLASS_NAME")
-      logger.info("\tBOW %d: %d connections".format(minMatch, networkValues.size))
-    })
-
-    (0.3 to 1.0 by 0.1).foreach(scoreThreshold => {
-      val networkValues = NetworkBuilder.buildNetworkBOWJaccard(datasetValues, scoreThreshold)
-      DatasetWriter.writeLines(
-        "result/NETWORK_BOWJaccard_%.2f_%s.txt".format(scoreThreshold, dsName.replaceFirst(SourceLocations.location, "").replaceAll("/.*", "")),
-        networkValues.map(v => "%s %s".format(v._1, v._2)),
-        "#CANONICAL_CLASS_NAME CANONICAL_CLASS_NAME")
-      logger.info("\tBOWJaccard %.2f: %d connections".format(scoreThreshold, networkValues.size))
-    })
-
-    (0.3 to 1.0 by 0.1).foreach(scoreThreshold => {
-      val networkValues = NetworkBuilder.buildNetworkTFIDFCosine(datasetValues, scoreThreshold)
-      DatasetWriter.writeLines(
-        "result/NETWORK_TFIDFCosine_%.2f_%s.txt".format(scoreThreshold, dsName.replaceFirst(SourceLocations.location, "").replaceAll("/.*", "")),
-        networkValues.map(v => "%s %s".format(v._1, v._2)),
-        "#CANONICAL_CLASS_NAME CANONICAL_CLASS_NAME")
-      logger.info("\tTFIDFCosine %.2f: %d connections".format(scoreThreshold, networkValues.size))
-    })
+  //version, format and thresholds the networks were written with
+  private def networkStamp = "%d %s %s %s %s".format(networkVersion, networkFormat,
+    bowIndex.map(_._1).mkString(","), jaccardIndex.map(_._1).mkString(","), cosineIndex.map(_._1).mkString(","))
 
+  //sweep streams its networks straight into the network files
+  private def writeComments(dataset: SourceLocations.Value, datasetValues: ArrayBuffer[(String, String)], attributes: Seq[(String, String => String)], sweep: SweepSinks => Unit) {
+    val dsName = dataset.toString.replaceFirst(SourceLocations.location, "").replaceAll("/.*", "")
+    Files.deleteIfExists(Paths.get(completionFile(dsName)))
+
+    if (networkFormat == NetworkFormat.SCORED) {
+      writeScoredNetworks(dsName, attributes, sweep)
+    } else {
+      writeNetworks(dsName, attributes, sweep)
+    }
 
     DatasetWriter.writeLines(
-      "result/COMMENTS_%s.txt".format(dsName.replaceFirst(SourceLocations.location, "").replaceAll("/.*", "")),
+      "result/COMMENTS_%s.txt".format(dsName),
       datasetValues.map(v => "%s \"%s\"".format(v._1, v._2)),
       "#CANONICAL_CLASS_NAME \"COMMENTS\"")
 
+    DatasetWriter.writeLines(completionFile(dsName), ArrayBuffer(networkStamp), "#NETWORK_STAMP")
+  }
+
+  //only the lowest threshold of each measure is swept, its file holds those of the others
+  private def writeScoredNetworks(dsName: String, attributes: Seq[(String, String => String)], sweep: SweepSinks => Unit) {
+    val bow = DatasetWriter.scoredNetworkSink("result/NETWORK_BOW_%s".format(dsName), bowIndex)
+    val bowJaccard = DatasetWriter.scoredNetworkSink("result/NETWORK_BOWJaccard_%s".format(dsName), jaccardIndex)
+    val tfidfCosine = DatasetWriter.scoredNetworkSink("result/NETWORK_TFIDFCosine_%s".format(dsName), cosineIndex, TFIDFMatrix.Tolerance)
+
+    sweep(new SweepSinks(
+      Seq((minMatches.min, exported("result/NETWORK_BOW_%s".format(dsName), bow, attributes))),
+      Seq((jaccardIndex.map(_._2).min, exported("result/NETWORK_BOWJaccard_%s".format(dsName), bowJaccard, attributes))),
+      Seq((cosineIndex.map(_._2).min, exported("result/NETWORK_TFIDFCosine_%s".format(dsName), tfidfCosine, attributes)))))
+
+    bow.counts.foreach(count => logger.info("\tBOW %s: %d connections".format(count._1, count._2)))
+    bowJaccard.counts.foreach(count => logger.info("\tBOWJaccard %s: %d connections".format(count._1, count._2)))
+    tfidfCosine.counts.foreach(count => logger.info("\tTFIDFCosine %s: %d connections".format(count._1, count._2)))
+  }
+
+  private def writeNetworks(dsName: String, attributes: Seq[(String, String => String)], sweep: SweepSinks => Unit) {
+    val counted = (name: String, maxWeight: Double) => {
+      val counter = new CountingEdgeSink()
+      (new FanOutEdgeSink(DatasetWriter.networkSink(name, networkFormat, maxWeight), counter), counter)
+    }
+    val bow = minMatches.map(minMatch => (minMatch, counted(
+      "result/NETWORK_BOW_%d_%s".format(minMatch, dsName), 0xFFFF)))
+    val bowJaccard = jaccardThresholds.map(scoreThreshold => (scoreThreshold, counted(
+      "result/NETWORK_BOWJaccard_%.2f_%s".format(scoreThreshold, dsName), 1.0)))
+    val tfidfCosine = cosineThresholds.map(scoreThreshold => (scoreThreshold, counted(
+      "result/NETWORK_TFIDFCosine_%.2f_%s".format(scoreThreshold, dsName), 1.0)))
+
+    sweep(new SweepSinks(
+      exportFirst("result/NETWORK_BOW_%s".format(dsName), bow.map(bucket => (bucket._1, bucket._2._1)), attributes),
+      exportFirst("result/NETWORK_BOWJaccard_%s".format(dsName), bowJaccard.map(bucket => (bucket._1, bucket._2._1)), attributes),
+      exportFirst("result/NETWORK_TFIDFCosine_%s".format(dsName), tfidfCosine.map(bucket => (bucket._1, bucket._2._1)), attributes)))
+
+    bow.foreach(bucket => logger.info("\tBOW %d: %d connections".format(bucket._1, bucket._2._2.count)))
+    bowJaccard.foreach(bucket => logger.info("\tBOWJaccard %.2f: %d connections".format(bucket._1, bucket._2._2.count)))
+    tfidfCosine.foreach(bucket => logger.info("\tTFIDFCosine %.2f: %d connections".format(bucket._1, bucket._2._2.count)))
+  }
+
+  //sink also writing the network to name in every graph format
+  private def exported(name: String, sink: EdgeSink, attributes: Seq[(String, String => String)]): EdgeSink = {
+    if (graphFormats.isEmpty) sink else new FanOutEdgeSink(sink +: graphFormats.map(DatasetWriter.graphSink(name, _, attributes)): _*)
+  }
+
+  //the first bucket, of the lowest threshold, exported
+  private def exportFirst[T](name: String, buckets: Seq[(T, EdgeSink)], attributes: Seq[(String, String => String)]) = {
+    buckets.updated(0, (buckets.head._1, exported(name, buckets.head._2, attributes)))
   }
 
 
   def main(args: Array[String]) {
-    extractComments(SourceLocations.VUZE_4901_02)
-    extractComments(SourceLocations.MIKIOBRAUN_JBLAS_6668AC9)
-    extractComments(SourceLocations.LUCENE_4_1_0)
-    extractComments(SourceLocations.COLT)
-    extractComments(SourceLocations.HADOOP_2_0_3_alpha)
-    extractComments(SourceLocations.JBULLET_20101010)
-    extractComments(SourceLocations.JUNG2_2_0_1)
-    extractComments(SourceLocations.JDK_1_8_0)
+    ProjectScheduler.run(SourceLocations.values.toSeq)(updateComments(_, _))
   }
 
 }
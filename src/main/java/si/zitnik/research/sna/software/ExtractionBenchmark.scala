@@ -0,0 +1,75 @@
+package si.zitnik.research.sna.software
+
+import util.{JavaHeaderScanner, JavaCommentLexer, SoftwareFileUtil, SourceFinder}
+import si.zitnik.research.sna.software.enum.SourceLocations
+import io.Source
+import scala.util.matching.Regex
+import collection.mutable.ArrayBuffer
+import com.typesafe.scalalogging.slf4j.Logging
+
+//Extraction times of the lexer and scanner against the former regex paths, on already loaded sources, logged per project.
+//Comment scan times only find the comments, extractComments also runs the shared comment processing.
+//A plain timing loop rather than JMH, the pom has no Scala or JMH build to run it from.
+object ExtractionBenchmark extends Logging {
+  val warmupRounds = 3
+  val measuredRounds = 5
+
+  private val blockRegex = new Regex("""(?s)/\*(.*?)\*/""", "comment")
+  private val lineRegex = new Regex("""\s+//(.*)""", "comment")
+  private val packageRegex = new Regex(""".*package\s+(.*)\s*;.*""", "package")
+
+  //finding the comments only, without processing them
+  private def regexScan(source: String) = {
+    blockRegex.findAllMatchIn(source).map(_.group("comment").length).sum + lineRegex.findAllMatchIn(source).map(_.group("comment").length).sum
+  }
+
+  private def lexerScan(source: String) = {
+    val spans = JavaCommentLexer.scan(source)
+    (0 until spans.size).map(k => spans.end(k) - spans.start(k)).sum
+  }
+
+  //former extractPackage, null where it exited
+  private def regexPackage(source: String) = {
+    packageRegex.findFirstIn(source) match {
+      case Some(packageRegex(p)) => p
+      case None => null
+    }
+  }
+
+  private def scannerPackage(source: String) = JavaHeaderScanner.scanPackage(source).orNull
+
+  //milliseconds of measuredRounds calls of extract on every source, after warmupRounds calls
+  private def time(sources: ArrayBuffer[String], extract: String => Any) = {
+    (1 to warmupRounds).foreach(_ => sources.foreach(extract(_)))
+
+    val start = System.nanoTime()
+    (1 to measuredRounds).foreach(_ => sources.foreach(extract(_)))
+    (System.nanoTime() - start) / 1000000 / measuredRounds
+  }
+
+  private def benchmark(dataset: SourceLocations.Value) {
+    val dsName = dataset.toString.replaceFirst(SourceLocations.location, "").replaceAll("/.*", "")
+
+    logger.info("Doing project: %s".format(dsName))
+    val sources = SourceFinder.streamFiles(dataset.toString).map(filename => Source.fromFile(filename, "latin1").getLines().mkString("\n")).to[ArrayBuffer]
+
+    val regexScanTime = time(sources, regexScan)
+    val lexerScanTime = time(sources, lexerScan)
+    val regexTime = time(sources, SoftwareFileUtil.extractCommentsRegex)
+    val lexerTime = time(sources, source => SoftwareFileUtil.extractComments(source))
+    val changedComments = sources.count(source => SoftwareFileUtil.extractCommentsRegex(source) != SoftwareFileUtil.extractComments(source))
+    logger.info("\tcomment scan: regex %d ms, lexer %d ms; extractComments: regex %d ms, lexer %d ms; %d of %d files with different comments".format(
+      regexScanTime, lexerScanTime, regexTime, lexerTime, changedComments, sources.size))
+
+    val regexPackageTime = time(sources, regexPackage)
+    val scannerPackageTime = time(sources, scannerPackage)
+    val changedPackages = sources.count(source => regexPackage(source) != scannerPackage(source))
+    logger.info("\tpackage: regex %d ms, scanner %d ms; %d of %d files with a different package".format(
+      regexPackageTime, scannerPackageTime, changedPackages, sources.size))
+  }
+
+  def main(args: Array[String]) {
+    SourceLocations.values.foreach(benchmark(_))
+  }
+
+}
@@ -0,0 +1,234 @@
+package si.zitnik.research.sna.software
+
+import model.{ManifestEntry, SoftwareFile}
+import util.{AuthorRules, CachedCorpus, CorpusCache, CommentNormalizer, JavaCommentLexer, Latin1Reader, SoftwareFileUtil, SourceEntries, SourceProvider, StageCounter}
+import si.zitnik.research.sna.software.enum.SourceLocations
+import java.util.concurrent.{ExecutionException, Callable, FutureTask, ArrayBlockingQueue}
+import java.util.concurrent.atomic.AtomicReference
+import collection.mutable.ArrayBuffer
+import com.typesafe.scalalogging.slf4j.Logging
+
+//Reads every source file of a project once and extracts all its features, the author and comment stages run from the records
+object ExtractionPipeline extends Logging {
+
+  //fields are copied out of fileSource, it may be reused after
+  private def extractFile(filename: String, fileSource: CharSequence, rules: AuthorRules): SoftwareFile = {
+    val packageName = SoftwareFileUtil.extractPackage(fileSource)
+    if (packageName.isEmpty) {
+      logger.warn("No package declaration in %s, using the default package".format(filename))
+    }
+
+    val spans = JavaCommentLexer.scan(fileSource)
+    new SoftwareFile(
+      filename,
+      packageName,
+      SoftwareFileUtil.extractClassName(filename),
+      CommentNormalizer.stripTags(SoftwareFileUtil.extractAuthor(fileSource, rules).trim),
+      CommentNormalizer.stripTags(SoftwareFileUtil.extractComments(fileSource, spans).trim),
+      SoftwareFileUtil.extractImports(fileSource, spans))
+  }
+
+  //bump whenever extraction changes its output, cached records of older versions are then re-extracted
+  val extractorVersion = 2
+
+  val cacheLocation = "cache"
+
+  def cacheFile(dataset: SourceLocations.Value) = {
+    "%s/%s.corpus".format(cacheLocation, dataset.toString.replaceFirst(SourceLocations.location, "").replaceAll("/.*", ""))
+  }
+
+  //work items in flight between the stages
+  val queueCapacity = 256
+
+  //files read and not extracted yet per worker, each holds the buffers of a Latin1Reader
+  val readersPerWorker = 2
+
+  //record, its manifest entry and whether it was extracted in this run
+  private type Extracted = (SoftwareFile, ManifestEntry, Boolean)
+
+  //Records in source discovery order, the location may be a directory or a zip, jar or tar.gz archive.
+  //With the cache only files changed since the cached run are extracted: a file is unchanged when its size and time,
+  //or else its content hash, match the manifest.
+  def extractFiles(dataset: SourceLocations.Value, useCache: Boolean = true, workers: Int = Runtime.getRuntime.availableProcessors()): ArrayBuffer[SoftwareFile] = {
+    val rules = AuthorRules(dataset)
+    val cached = if (useCache) CorpusCache.load(cacheFile(dataset)).filter(corpus => corpus.extractorVersion == extractorVersion && corpus.rulesHash == rules.markerHash) else None
+    val previous = cached.map(corpus => corpus.manifest.map(_.path).zip(corpus.manifest.zip(corpus.files)).toMap).getOrElse(Map())
+
+    val location = dataset.toString
+    val entries = SourceProvider(location).streamEntries(location)
+    val results = try {
+      runStages(entries, previous, rules, workers)
+    } finally {
+      entries.close()
+    }
+
+    val files = results.map(_._1)
+    val manifest = results.map(_._2)
+    val extracted = results.count(_._3)
+
+    val fingerprint = CorpusCache.fingerprint(manifest)
+    if (cached.exists(_.fingerprint == fingerprint)) {
+      logger.info("\tLoaded %d cached files from %s".format(files.size, cacheFile(dataset)))
+    } else {
+      logger.info("\tExtracted %d files, %d unchanged, %d removed".format(extracted, files.size - extracted, (previous.keySet -- manifest.map(_.path)).size))
+      if (useCache) {
+        CorpusCache.save(cacheFile(dataset), new CachedCorpus(extractorVersion, rules.markerHash, fingerprint, files, manifest))
+      }
+    }
+    files
+  }
+
+  //Discovery, read, extract and aggregate stages with bounded queues between them.
+  //One thread walks the entries and reads the changed ones (a streamed archive has to be read in order), workers extract
+  //and the caller collects the results in discovery order, waiting on the oldest one.
+  //A file is read into the buffers of a Latin1Reader, decoded by the worker extracting it and the reader is then reused.
+  //There are at most readersPerWorker readers per worker and the read stage waits for a free one, so the buffers of files
+  //read ahead are bounded and reused whatever the queue capacity.
+  private def runStages(entries: SourceEntries, previous: Map[String, (ManifestEntry, SoftwareFile)], rules: AuthorRules, workers: Int) = {
+    val discovery = new StageCounter("discovery")
+    val read = new StageCounter("read")
+    val extract = new StageCounter("extract", workers)
+    val aggregate = new StageCounter("aggregate")
+
+    val End = new FutureTask[Extracted](new Callable[Extracted] {
+      def call() = null
+    })
+    //every task in discovery order, and the tasks still to be extracted
+    val pending = new ArrayBlockingQueue[FutureTask[Extracted]](queueCapacity)
+    val work = new ArrayBlockingQueue[FutureTask[Extracted]](queueCapacity)
+    val failure = new AtomicReference[Throwable]()
+    val readerCount = readersPerWorker * math.max(1, workers)
+    val readers = new ArrayBlockingQueue[Latin1Reader](readerCount)
+    var readersCreated = 0
+    //only called by the read stage
+    val freeReader = () => {
+      val retVal = readers.poll()
+      if (retVal != null) {
+        retVal
+      } else if (readersCreated < readerCount) {
+        readersCreated += 1
+        new Latin1Reader()
+      } else {
+        readers.take()
+      }
+    }
+
+    val task = (body: () => Extracted) => new FutureTask[Extracted](new Callable[Extracted] {
+      def call() = body()
+    })
+    //reused records need no extraction
+    val done = (result: Extracted) => {
+      val retVal = task(() => result)
+      retVal.run()
+      retVal
+    }
+
+    val reader = new Thread(new Runnable {
+      def run() {
+        try {
+          while (discovery.time(entries.hasNext)) {
+            val source = discovery.time(entries.next())
+            discovery.count()
+
+            val next = previous.get(source.path) match {
+              case Some((entry, record)) if entry.size == source.size && entry.lastModified == source.lastModified => {
+                done((record, entry, false))
+              }
+              case unchecked => {
+                val reader = freeReader()
+                read.time(source.read(reader))
+                read.count()
+                val entry = new ManifestEntry(source.path, source.size, source.lastModified, reader.contentHash)
+                unchecked match {
+                  case Some((previousEntry, record)) if previousEntry.contentHash == entry.contentHash => {
+                    readers.add(reader)
+                    done((record, entry, false))
+                  }
+                  case _ => {
+                    val extraction = task(() => {
+                      val record = try {
+                        extract.time(extractFile(source.path, reader.decode(), rules))
+                      } finally {
+                        readers.add(reader)
+                      }
+                      extract.count()
+                      (record, entry, true)
+                    })
+                    work.put(extraction)
+                    extraction
+                  }
+                }
+              }
+            }
+            pending.put(next)
+          }
+        } catch {
+          case e: InterruptedException => return
+          case e: Throwable => failure.set(e)
+        }
+
+        try {
+          pending.put(End)
+          (1 to workers).foreach(_ => work.put(End))
+        } catch {
+          case e: InterruptedException =>
+        }
+      }
+    }, "ExtractionPipeline read")
+
+    val extractors = (1 to workers).map(k => new Thread(new Runnable {
+      def run() {
+        try {
+          var next = work.take()
+          while (next ne End) {
+            next.run()
+            next = work.take()
+          }
+        } catch {
+          case e: InterruptedException =>
+        }
+      }
+    }, "ExtractionPipeline extract " + k))
+
+    val threads = reader +: extractors
+    threads.foreach(thread => {
+      thread.setDaemon(true)
+      thread.start()
+    })
+
+    val start = System.nanoTime()
+    val retVal = ArrayBuffer[Extracted]()
+    try {
+      var next = pending.take()
+      while (next ne End) {
+        val result = try {
+          next.get()
+        } catch {
+          case e: ExecutionException => throw e.getCause
+        }
+        aggregate.time(retVal += result)
+        aggregate.count()
+        next = pending.take()
+      }
+      if (failure.get() != null) {
+        throw failure.get()
+      }
+    } finally {
+      threads.foreach(_.interrupt())
+    }
+
+    logger.info("\t%s, %s, %s, %s; %d ms".format(discovery, read, extract, aggregate, (System.nanoTime() - start) / 1000000))
+    retVal
+  }
+
+  def main(args: Array[String]) {
+    ProjectScheduler.run(SourceLocations.values.toSeq)((dataset, workers) => {
+      logger.info("Reading project: %s".format(dataset))
+      val files = extractFiles(dataset, workers = workers)
+
+      AuthorExtractor.extractAuthors(dataset, files)
+      CommentExtractor.extractComments(dataset, files)
+    })
+  }
+
+}
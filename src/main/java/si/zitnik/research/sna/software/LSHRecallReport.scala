@@ -0,0 +1,38 @@
+package si.zitnik.research.sna.software
+
+import network.NetworkBuilder
+import si.zitnik.research.sna.software.enum.SourceLocations
+import com.typesafe.scalalogging.slf4j.Logging
+
+//Recall of the MinHash/LSH BOWJaccard networks against the exact ones, logged per project
+object LSHRecallReport extends Logging {
+  val bandsAndRows = Seq((50, 3), (25, 4), (20, 5))
+
+  private def report(dataset: SourceLocations.Value) {
+    val dsName = dataset.toString.replaceFirst(SourceLocations.location, "").replaceAll("/.*", "")
+
+    logger.info("Doing project: %s".format(dsName))
+    val datasetValues = CommentExtractor.extractDatasetValues(dataset)
+
+    (0.3 to 1.0 by 0.1).foreach(scoreThreshold => {
+      var start = System.currentTimeMillis()
+      val exact = NetworkBuilder.buildNetworkBOWJaccard(datasetValues, scoreThreshold).toSet
+      val exactTime = System.currentTimeMillis() - start
+
+      bandsAndRows.foreach({ case (bands, rows) => {
+        start = System.currentTimeMillis()
+        val approx = NetworkBuilder.buildNetworkBOWJaccardApprox(datasetValues, scoreThreshold, bands, rows)
+        val approxTime = System.currentTimeMillis() - start
+
+        val recall = if (exact.isEmpty) 1.0 else approx.count(exact.contains(_)) * 1.0 / exact.size
+        logger.info("\tBOWJaccard %.2f, %d bands x %d rows: recall %.4f, %d exact edges in %d ms, %d LSH edges in %d ms".format(
+          scoreThreshold, bands, rows, recall, exact.size, exactTime, approx.size, approxTime))
+      }})
+    })
+  }
+
+  def main(args: Array[String]) {
+    SourceLocations.values.foreach(report(_))
+  }
+
+}
@@ -0,0 +1,139 @@
+package si.zitnik.research.sna.software
+
+import util.{SourceFinder, CorpusCache}
+import network.PairEngine
+import si.zitnik.research.sna.software.enum.SourceLocations
+import java.util.concurrent.{TimeUnit, LinkedBlockingQueue}
+import collection.mutable.ArrayBuffer
+import com.typesafe.scalalogging.slf4j.Logging
+import java.io.File
+import java.util.zip.ZipFile
+import scala.collection.JavaConversions._
+
+//A project run by ProjectScheduler, sized by its file count and the pairs of its pairwise networks.
+//Its threads extract its files and then score its pairs.
+class ProjectJob(val dataset: SourceLocations.Value, val files: Int) {
+  val name = dataset.toString.replaceFirst(SourceLocations.location, "").replaceAll("/.*", "")
+  val pairs = files.toLong * (files - 1) / 2
+
+  //rough heap of the records, corpus and candidate pairs of the project
+  val heap = files * ProjectScheduler.bytesPerFile + pairs * ProjectScheduler.bytesPerPair
+  val threads = math.max(1, math.min(ProjectScheduler.processors, files / ProjectScheduler.filesPerThread))
+  //relative run time, pairwise scoring dominates the large projects
+  val cost = files + pairs / ProjectScheduler.pairsPerFile
+
+  var started = 0L
+  var failure: Throwable = null
+}
+
+//Runs projects concurrently, as many as fit into the heap and thread budgets, the most expensive first.
+//A project that fits no budget runs alone; smaller projects are started beside a large one while they fit.
+object ProjectScheduler extends Logging {
+  val processors = Runtime.getRuntime.availableProcessors()
+
+  //rough sizes for the heap estimate of a project
+  val bytesPerFile = 64L * 1024
+  val bytesPerPair = 16L
+  //extraction workers of a project, one per this many files
+  val filesPerThread = 200
+  //pairs scored in the time of extracting one file
+  val pairsPerFile = 2000L
+
+  val defaultHeapBudget = Runtime.getRuntime.maxMemory() / 10 * 8
+  val progressInterval = 10000L
+
+  //compressed bytes of a source file in a tar.gz archive, for its estimate
+  val archivedBytesPerFile = 4L * 1024
+
+  //Number of source files of a project, estimated without walking an archive or reading any file: the records of its
+  //cache, else the java entries of a zip central directory, the size of a tar.gz archive or the paths of a directory walk
+  def countFiles(dataset: SourceLocations.Value): Int = {
+    val location = dataset.toString
+    val name = location.toLowerCase
+    CorpusCache.fileCount(ExtractionPipeline.cacheFile(dataset)).getOrElse({
+      if (name.endsWith(".zip") || name.endsWith(".jar")) {
+        val zip = new ZipFile(location)
+        try {
+          zip.entries().count(_.getName.endsWith(".java"))
+        } finally {
+          zip.close()
+        }
+      } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+        (new File(location).length() / archivedBytesPerFile).toInt
+      } else if (new File(location).isDirectory) {
+        val paths = SourceFinder.streamFiles(location)
+        try {
+          paths.size
+        } finally {
+          paths.close()
+        }
+      } else {
+        0
+      }
+    })
+  }
+
+  //Calls work with every project and its number of extraction workers, concurrently within the budgets.
+  //A failed project does not stop the others, the first failure is thrown once all have finished.
+  def run(datasets: Seq[SourceLocations.Value], heapBudget: Long = defaultHeapBudget, threadBudget: Int = processors)(work: (SourceLocations.Value, Int) => Unit) {
+    val queued = datasets.map(dataset => new ProjectJob(dataset, countFiles(dataset))).sortBy(-_.cost).to[ArrayBuffer]
+    val running = ArrayBuffer[ProjectJob]()
+    val finished = new LinkedBlockingQueue[ProjectJob]()
+    val totalCost = queued.map(_.cost).sum
+    var doneCost = 0L
+    var done = 0
+    val failures = ArrayBuffer[ProjectJob]()
+
+    queued.foreach(job => logger.info("Project %s: %d files, %d pairs, ~%d MB heap, %d thread(s)".format(job.name, job.files, job.pairs, job.heap >> 20, job.threads)))
+
+    val start = System.currentTimeMillis()
+    var lastProgress = start
+    while (queued.nonEmpty || running.nonEmpty) {
+      //start every queued project that fits beside the running ones, in order of cost
+      for (job <- queued.toList) {
+        if (running.isEmpty || (running.map(_.heap).sum + job.heap <= heapBudget && running.map(_.threads).sum + job.threads <= threadBudget)) {
+          queued -= job
+          running += job
+          job.started = System.currentTimeMillis()
+          val thread = new Thread(new Runnable {
+            def run() {
+              try {
+                PairEngine.withParallelism(job.threads)(work(job.dataset, job.threads))
+              } catch {
+                case e: Throwable => job.failure = e
+              } finally {
+                finished.put(job)
+              }
+            }
+          }, "ProjectScheduler " + job.name)
+          thread.setDaemon(true)
+          thread.start()
+        }
+      }
+
+      val job = finished.poll(progressInterval, TimeUnit.MILLISECONDS)
+      if (job != null) {
+        running -= job
+        done += 1
+        doneCost += job.cost
+        if (job.failure != null) {
+          logger.error("Project %s failed".format(job.name), job.failure)
+          failures += job
+        } else {
+          logger.info("Project %s done in %d s".format(job.name, (System.currentTimeMillis() - job.started) / 1000))
+        }
+      }
+
+      val now = System.currentTimeMillis()
+      if (job != null || now - lastProgress >= progressInterval) {
+        lastProgress = now
+        val eta = if (doneCost == 0) "unknown" else "%d s".format((totalCost - doneCost) * (now - start) / doneCost / 1000)
+        logger.info("Progress: %d/%d projects done, running %s, %d queued, ETA %s".format(
+          done, datasets.size, running.map(job => "%s (%d s)".format(job.name, (now - job.started) / 1000)).mkString(", "), queued.size, eta))
+      }
+    }
+
+    failures.headOption.foreach(job => throw job.failure)
+  }
+
+}
@@ -0,0 +1,10 @@
+package si.zitnik.research.sna.software.enum
+
+object CommentKind extends Enumeration {
+  //  /* ... */
+  val BLOCK = Value("BLOCK")
+  //  /** ... */
+  val JAVADOC = Value("JAVADOC")
+  //  // ...
+  val LINE = Value("LINE")
+}
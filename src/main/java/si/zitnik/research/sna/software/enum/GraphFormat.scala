@@ -0,0 +1,10 @@
+package si.zitnik.research.sna.software.enum
+
+object GraphFormat extends Enumeration {
+  //.net of Pajek, vertices by label only
+  val PAJEK = Value("PAJEK")
+  //.graphml, read by JUNG and Gephi
+  val GRAPHML = Value("GRAPHML")
+  //.gexf of Gephi
+  val GEXF = Value("GEXF")
+}
@@ -0,0 +1,10 @@
+package si.zitnik.research.sna.software.enum
+
+object NetworkFormat extends Enumeration {
+  //.txt, one "CLASS CLASS" line per edge
+  val TEXT = Value("TEXT")
+  //.bin, class names once and adjacency rows of varint ids, see BinaryNetwork
+  val BINARY = Value("BINARY")
+  //.txt per measure instead of per threshold, the edges of the lowest threshold by score, see ScoredNetworkSink
+  val SCORED = Value("SCORED")
+}
@@ -0,0 +1,8 @@
+package si.zitnik.research.sna.software.enum
+
+object NetworkOutputMode extends Enumeration {
+  //one "CLASS CLASS" line per edge
+  val EDGES = Value("EDGES")
+  //one line per clique of matching classes, its edges are all pairs of the line
+  val GROUPS = Value("GROUPS")
+}
@@ -0,0 +1,86 @@
+package si.zitnik.research.sna.software.model
+
+import collection.mutable
+import collection.mutable.ArrayBuffer
+
+//Comments of all classes tokenized once (split on " ") into ascending distinct term ids of a shared dictionary
+class CommentCorpus(val classNames: Array[String], val texts: Array[String]) {
+  require(classNames.length == texts.length, "Every class needs its comment text")
+
+  private val dictionary = mutable.HashMap[String, Int]()
+  private val terms = ArrayBuffer[String]()
+
+  private def termIdOrAdd(term: String) = dictionary.getOrElseUpdate(term, {
+    terms.append(term)
+    terms.size - 1
+  })
+
+  //texts that are empty after trimming have no terms
+  val (documentTerms, termFrequencies) = {
+    val documentTerms = new Array[Array[Int]](texts.length)
+    val termFrequencies = new Array[Array[Int]](texts.length)
+
+    for (doc <- 0 until texts.length) {
+      if (texts(doc).trim.isEmpty) {
+        documentTerms(doc) = Array[Int]()
+        termFrequencies(doc) = Array[Int]()
+      } else {
+        val ids = texts(doc).split(" ").map(termIdOrAdd(_))
+        java.util.Arrays.sort(ids)
+
+        //run-length encode the sorted ids into distinct terms and their counts
+        val distinct = ids.distinct
+        val counts = new Array[Int](distinct.length)
+        var k = 0
+        ids.foreach(id => {
+          if (distinct(k) != id) {
+            k += 1
+          }
+          counts(k) += 1
+        })
+
+        documentTerms(doc) = distinct
+        termFrequencies(doc) = counts
+      }
+    }
+
+    (documentTerms, termFrequencies)
+  }
+
+  //number of documents containing each term, empty documents are counted by the words of their (blank) text
+  val documentFrequencies: Array[Int] = {
+    val retVal = new Array[Int](terms.size)
+    documentTerms.foreach(_.foreach(term => retVal(term) += 1))
+    for {
+      doc <- 0 until texts.length
+      if documentTerms(doc).isEmpty
+      term <- texts(doc).split(" ").distinct
+      id <- dictionary.get(term)
+    } {
+      retVal(id) += 1
+    }
+    retVal
+  }
+
+  def size = classNames.length
+
+  def termCount = terms.size
+
+  def term(id: Int) = terms(id)
+
+  def termId(term: String) = dictionary.getOrElse(term, -1)
+
+  def isEmpty(doc: Int) = documentTerms(doc).isEmpty
+
+}
+
+object CommentCorpus {
+
+  //documents in the order of buffer.toMap, later duplicates of a class name win
+  def apply(buffer: ArrayBuffer[(String, String)]) = {
+    val classMap = buffer.toMap
+    val classNames = classMap.keySet.toArray
+    new CommentCorpus(classNames, classNames.map(classMap(_)))
+  }
+
+}
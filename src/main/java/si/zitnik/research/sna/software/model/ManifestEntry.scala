@@ -0,0 +1,6 @@
+package si.zitnik.research.sna.software.model
+
+//State of a source file when it was extracted, a file with the same size and time or the same content is not extracted again
+class ManifestEntry(val path: String, val size: Long, val lastModified: Long, val contentHash: Long) {
+
+}
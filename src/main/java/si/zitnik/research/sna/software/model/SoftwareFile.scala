@@ -7,6 +7,19 @@ package si.zitnik.research.sna.software.model
  * Time: 6:47 PM
  * To change this template use File | Settings | File Templates.
  */
-class SoftwareFile {
+//Everything extracted from one source file, read once by ExtractionPipeline
+class SoftwareFile(
+  val filename: String,
+  //empty for the default package
+  val packageName: String,
+  val className: String,
+  //trimmed, without HTML tags; dataset exceptions are applied by AuthorExtractor
+  val author: String,
+  //processed comments, trimmed, without HTML tags
+  val comments: String,
+  //imported types and packages as written, static imports included
+  val imports: Seq[String]) {
+
+  def canonicalClassName = if (packageName.isEmpty) className else "%s.%s".format(packageName, className)
 
 }
@@ -0,0 +1,35 @@
+package si.zitnik.research.sna.software.network
+
+//Bag of word match: non-empty documents sharing at least minMatches words, scored by the number of shared words
+class BOWMeasure(index: InvertedIndex, minMatches: Int) extends PairMeasure {
+
+  def size = index.size
+
+  def newScanner() = new PairScanner {
+    private val overlaps = new Array[Int](index.size)
+    private val touched = new Array[Int](index.size)
+
+    def scan(i: Int, jFrom: Int, jUntil: Int, pairs: PairBuffer) {
+      if (!index.corpus.isEmpty(i)) {
+        if (minMatches <= 0) {
+          //every non-empty pair matches, even without shared words
+          for (j <- jFrom until jUntil if !index.corpus.isEmpty(j)) {
+            pairs.add(i, j, InvertedIndex.sortedOverlap(index.corpus.documentTerms(i), index.corpus.documentTerms(j)))
+          }
+        } else {
+          val touchedCount = index.countOverlaps(i, jFrom, jUntil, overlaps, touched)
+          java.util.Arrays.sort(touched, 0, touchedCount)
+
+          for (k <- 0 until touchedCount) {
+            val j = touched(k)
+            if (overlaps(j - jFrom) >= minMatches) {
+              pairs.add(i, j, overlaps(j - jFrom))
+            }
+            overlaps(j - jFrom) = 0
+          }
+        }
+      }
+    }
+  }
+
+}
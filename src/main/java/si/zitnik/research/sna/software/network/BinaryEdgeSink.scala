@@ -0,0 +1,128 @@
+package si.zitnik.research.sna.software.network
+
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+
+//Writes a network in the binary format of BinaryNetwork while the edges arrive, rows are never held in memory.
+//Scores are kept as 16 bit fractions of maxWeight when maxWeight > 0, scores of integer measures up to 65535 are exact
+//with maxWeight = 65535.
+class BinaryEdgeSink(filename: String, maxWeight: Double = 0) extends EdgeSink {
+  private var channel: FileChannel = null
+  private val buffer = ByteBuffer.allocate(1 << 16)
+  //file position of the start of buffer
+  private var flushed = 0L
+
+  private var rowStarts: Array[Long] = null
+  private var row = 0
+  private var previousTarget = -1
+  private var edges = 0L
+
+  private def position = flushed + buffer.position()
+
+  private def flush() {
+    buffer.flip()
+    while (buffer.hasRemaining) {
+      flushed += channel.write(buffer)
+    }
+    buffer.clear()
+  }
+
+  private def ensure(bytes: Int) {
+    if (buffer.remaining() < bytes) {
+      flush()
+    }
+  }
+
+  def open(classNames: Array[String]) {
+    val file = new RandomAccessFile(filename, "rw")
+    file.setLength(0)
+    channel = file.getChannel
+    flushed = 0
+    buffer.clear()
+
+    //header is written again on close, with the offsets
+    buffer.put(new Array[Byte](BinaryNetwork.headerSize))
+
+    //name offsets relative to the names, then the UTF-8 names
+    val names = classNames.map(_.getBytes("utf-8"))
+    var offset = 0
+    ensure(4)
+    buffer.putInt(offset)
+    names.foreach(name => {
+      offset += name.length
+      ensure(4)
+      buffer.putInt(offset)
+    })
+    names.foreach(name => {
+      var k = 0
+      while (k < name.length) {
+        ensure(1)
+        val length = math.min(buffer.remaining(), name.length - k)
+        buffer.put(name, k, length)
+        k += length
+      }
+    })
+
+    rowStarts = new Array[Long](classNames.length + 1)
+    row = 0
+    previousTarget = -1
+    edges = 0
+    rowStarts(0) = position
+  }
+
+  def edge(source: Int, target: Int, score: Double) {
+    if (source < row || (source == row && target <= previousTarget)) {
+      throw new IllegalArgumentException("Edge (%d, %d) out of order".format(source, target))
+    }
+    while (row < source) {
+      row += 1
+      rowStarts(row) = position
+      previousTarget = -1
+    }
+
+    ensure(7)
+    //ascending targets, each stored as the difference to the previous one
+    var delta = target - (if (previousTarget < 0) 0 else previousTarget)
+    while ((delta & ~0x7F) != 0) {
+      buffer.put(((delta & 0x7F) | 0x80).toByte)
+      delta >>>= 7
+    }
+    buffer.put(delta.toByte)
+    if (maxWeight > 0) {
+      buffer.putShort(math.round(math.max(0.0, math.min(1.0, score / maxWeight)) * 0xFFFF).toShort)
+    }
+
+    previousTarget = target
+    edges += 1
+  }
+
+  def close() {
+    while (row < rowStarts.length - 1) {
+      row += 1
+      rowStarts(row) = position
+    }
+
+    val rowsOffset = position
+    rowStarts.foreach(start => {
+      ensure(8)
+      buffer.putLong(start)
+    })
+    flush()
+
+    val header = ByteBuffer.allocate(BinaryNetwork.headerSize)
+    header.putInt(BinaryNetwork.magic)
+    header.putInt(BinaryNetwork.version)
+    header.putInt(rowStarts.length - 1)
+    header.putInt(if (maxWeight > 0) BinaryNetwork.weightsFlag else 0)
+    header.putLong(edges)
+    header.putDouble(maxWeight)
+    header.putLong(rowsOffset)
+    header.flip()
+    while (header.hasRemaining) {
+      channel.write(header, header.position())
+    }
+    channel.close()
+  }
+
+}
@@ -0,0 +1,112 @@
+package si.zitnik.research.sna.software.network
+
+import java.io.RandomAccessFile
+import java.nio.channels.FileChannel
+import java.nio.MappedByteBuffer
+
+//Network file of BinaryEdgeSink, read in place from a memory map: only the class names asked for are decoded.
+//Layout, big-endian:
+//  header: magic, version, vertex count, flags (ints), edge count (long), max weight (double), rows offset (long)
+//  names: vertex count + 1 int offsets into the UTF-8 class names that follow them
+//  rows: per vertex its edges, ascending by target, as varint differences to the previous target (the first to 0),
+//        each followed by a 16 bit weight when the weights flag is set
+//  row starts: vertex count + 1 long file offsets of the rows, the last one is the end of the rows
+class BinaryNetwork(filename: String) {
+  private val map: MappedByteBuffer = {
+    val file = new RandomAccessFile(filename, "r")
+    try {
+      require(file.length() <= Int.MaxValue, "Network file %s over 2 GB".format(filename))
+      //the mapping stays valid once the file is closed
+      file.getChannel.map(FileChannel.MapMode.READ_ONLY, 0, file.length())
+    } finally {
+      file.close()
+    }
+  }
+
+  require(map.getInt(0) == BinaryNetwork.magic, "%s is no binary network".format(filename))
+  require(map.getInt(4) == BinaryNetwork.version, "%s has network format version %d".format(filename, map.getInt(4)))
+
+  val vertexCount = map.getInt(8)
+  val hasWeights = (map.getInt(12) & BinaryNetwork.weightsFlag) != 0
+  val edgeCount = map.getLong(16)
+  val maxWeight = map.getDouble(24)
+  private val rowsOffset = map.getLong(32).toInt
+  private val namesStart = BinaryNetwork.headerSize + (vertexCount + 1) * 4
+
+  def className(vertex: Int) = {
+    val from = map.getInt(BinaryNetwork.headerSize + vertex * 4)
+    val bytes = new Array[Byte](map.getInt(BinaryNetwork.headerSize + (vertex + 1) * 4) - from)
+    var k = 0
+    while (k < bytes.length) {
+      bytes(k) = map.get(namesStart + from + k)
+      k += 1
+    }
+    new String(bytes, "utf-8")
+  }
+
+  def classNames = Array.tabulate(vertexCount)(className)
+
+  private def rowStart(vertex: Int) = map.getLong(rowsOffset + vertex * 8).toInt
+
+  //Calls f with every target and weight of the edges of source, NaN weights without the weights flag
+  def foreachNeighbour(source: Int)(f: (Int, Double) => Unit) {
+    var p = rowStart(source)
+    val end = rowStart(source + 1)
+    var target = 0
+    while (p < end) {
+      var delta = 0
+      var shift = 0
+      var b = map.get(p)
+      p += 1
+      while ((b & 0x80) != 0) {
+        delta |= (b & 0x7F) << shift
+        shift += 7
+        b = map.get(p)
+        p += 1
+      }
+      target += delta | (b << shift)
+
+      if (hasWeights) {
+        f(target, (map.getShort(p) & 0xFFFF) * maxWeight / 0xFFFF)
+        p += 2
+      } else {
+        f(target, Double.NaN)
+      }
+    }
+  }
+
+  def neighbours(source: Int) = {
+    val retVal = collection.mutable.ArrayBuilder.make[Int]()
+    foreachNeighbour(source)((target, weight) => retVal += target)
+    retVal.result()
+  }
+
+  def degree(source: Int) = {
+    var retVal = 0
+    foreachNeighbour(source)((target, weight) => retVal += 1)
+    retVal
+  }
+
+  //edges in the order they were written
+  def foreachEdge(f: (Int, Int, Double) => Unit) {
+    for (source <- 0 until vertexCount) {
+      foreachNeighbour(source)((target, weight) => f(source, target, weight))
+    }
+  }
+
+  //pushes the network into sink, as a builder would
+  def replay(sink: EdgeSink) {
+    EdgeSink.pushing(Seq(sink), classNames) {
+      foreachEdge(sink.edge)
+    }
+  }
+
+}
+
+object BinaryNetwork {
+  //"SNAN"
+  val magic = 0x534E414E
+  val version = 1
+  val weightsFlag = 1
+  val headerSize = 40
+}
@@ -0,0 +1,161 @@
+package si.zitnik.research.sna.software.network
+
+import collection.mutable.ArrayBuffer
+import si.zitnik.research.sna.software.util.{AsyncOutputFile, AsyncOutput}
+
+//Receives the edges of a network one at a time as they are built, so no builder holds the network itself.
+//Builders call open once, then edge for every edge, ascending by source and then target, then close.
+trait EdgeSink {
+  //vertex ids of the edges are indices of classNames
+  def open(classNames: Array[String])
+
+  //source > target, score is the similarity of the pair in the measure of the network
+  def edge(source: Int, target: Int, score: Double)
+
+  def close()
+}
+
+object EdgeSink {
+
+  //closes every sink, also when closing one of them fails, and rethrows the first failure
+  def closeAll(sinks: Seq[EdgeSink]) {
+    var failure: Throwable = null
+    sinks.foreach(sink => {
+      try {
+        sink.close()
+      } catch {
+        case e: Throwable => if (failure == null) failure = e
+      }
+    })
+    if (failure != null) {
+      throw failure
+    }
+  }
+
+  //opens the sinks, builds and closes the sinks opened, also when opening or building fails
+  def pushing(sinks: Seq[EdgeSink], classNames: Array[String])(build: => Unit) {
+    val opened = ArrayBuffer[EdgeSink]()
+    try {
+      sinks.foreach(sink => {
+        sink.open(classNames)
+        opened.append(sink)
+      })
+      build
+    } catch {
+      case e: Throwable => {
+        closeAfter(e, opened)
+        throw e
+      }
+    }
+    closeAll(opened)
+  }
+
+  //closes the sinks after failure, their own failures are kept as suppressed by it
+  private[network] def closeAfter(failure: Throwable, sinks: Seq[EdgeSink]) {
+    try {
+      closeAll(sinks)
+    } catch {
+      case e: Throwable => failure.addSuppressed(e)
+    }
+  }
+
+}
+
+//Writes "source target" lines of class names, the format of DatasetWriter.writeLines, through the AsyncOutput thread
+class FileEdgeSink(filename: String, headerLine: String = "#CANONICAL_CLASS_NAME CANONICAL_CLASS_NAME") extends EdgeSink {
+  private var classNames: Array[String] = null
+  private var bw: AsyncOutputFile = null
+
+  def open(classNames: Array[String]) {
+    this.classNames = classNames
+    bw = AsyncOutput.open(filename)
+    bw.write(headerLine); bw.newLine()
+  }
+
+  def edge(source: Int, target: Int, score: Double) {
+    bw.write(classNames(source)); bw.write(' '); bw.write(classNames(target)); bw.newLine()
+  }
+
+  def close() {
+    bw.close()
+  }
+
+}
+
+//Number of edges only
+class CountingEdgeSink extends EdgeSink {
+  private var edges = 0L
+
+  def open(classNames: Array[String]) {
+    edges = 0
+  }
+
+  def edge(source: Int, target: Int, score: Double) {
+    edges += 1
+  }
+
+  def close() {}
+
+  def count = edges
+
+}
+
+//Keeps the edges in memory as primitive (source, target, score) triples
+class IntPairEdgeSink extends EdgeSink {
+  private var names: Array[String] = null
+  val pairs = new PairBuffer()
+
+  def open(classNames: Array[String]) {
+    names = classNames
+  }
+
+  def edge(source: Int, target: Int, score: Double) {
+    pairs.add(source, target, score)
+  }
+
+  def close() {}
+
+  def classNames = names
+
+  def toClassPairs = {
+    val retVal = ArrayBuffer[(String, String)]()
+    for (k <- 0 until pairs.size) {
+      retVal.append((names(pairs.first(k)), names(pairs.second(k))))
+    }
+    retVal
+  }
+
+}
+
+//Passes every call on to all sinks, in their order
+class FanOutEdgeSink(sinks: EdgeSink*) extends EdgeSink {
+  private val targets = sinks.toArray
+
+  def open(classNames: Array[String]) {
+    val opened = ArrayBuffer[EdgeSink]()
+    try {
+      targets.foreach(sink => {
+        sink.open(classNames)
+        opened.append(sink)
+      })
+    } catch {
+      case e: Throwable => {
+        EdgeSink.closeAfter(e, opened)
+        throw e
+      }
+    }
+  }
+
+  def edge(source: Int, target: Int, score: Double) {
+    var k = 0
+    while (k < targets.length) {
+      targets(k).edge(source, target, score)
+      k += 1
+    }
+  }
+
+  def close() {
+    EdgeSink.closeAll(targets)
+  }
+
+}
@@ -0,0 +1,152 @@
+package si.zitnik.research.sna.software.network
+
+import java.nio.charset.Charset
+import si.zitnik.research.sna.software.util.{AsyncOutputFile, AsyncOutput}
+
+//Writes a network for graph tools while the edges arrive: the vertices with their attributes on open, then every edge,
+//weighted by its score. Vertex ids are the ids of the builder, attributes are (name, value of a class name).
+abstract class GraphEdgeSink(filename: String, attributes: Seq[(String, String => String)], charset: Charset) extends EdgeSink {
+  protected var bw: AsyncOutputFile = null
+
+  def open(classNames: Array[String]) {
+    bw = AsyncOutput.open(filename, charset)
+    writeVertices(classNames)
+  }
+
+  protected def writeVertices(classNames: Array[String])
+
+  protected def line(text: String) {
+    bw.write(text); bw.newLine()
+  }
+
+  protected def attributeValues(className: String) = attributes.map(attribute => attribute._2(className))
+
+  protected def weight(score: Double) = ScoredNetworkSink.formatScore(score)
+
+}
+
+object GraphEdgeSink {
+
+  //text of XML content and attribute values: control characters become spaces, characters XML 1.0 does not allow at all,
+  //U+FFFE, U+FFFF and surrogates that are not part of a pair, are left out
+  def xml(text: String) = {
+    val retVal = new StringBuilder()
+    for (k <- 0 until text.length) {
+      text.charAt(k) match {
+        case '&' => retVal.append("&amp;")
+        case '<' => retVal.append("&lt;")
+        case '>' => retVal.append("&gt;")
+        case '"' => retVal.append("&quot;")
+        case c if c < 0x20 && c != '\t' && c != '\n' && c != '\r' => retVal.append(' ')
+        case c if c == 0xFFFE || c == 0xFFFF => //not allowed
+        case c if Character.isHighSurrogate(c) => if (k + 1 < text.length && Character.isLowSurrogate(text.charAt(k + 1))) retVal.append(c)
+        case c if Character.isLowSurrogate(c) => if (k > 0 && Character.isHighSurrogate(text.charAt(k - 1))) retVal.append(c)
+        case c => retVal.append(c)
+      }
+    }
+    retVal.toString
+  }
+
+}
+
+//Pajek .net: "*Vertices n" with 1-based labelled vertices, then "*Edges" lines "source target weight".
+//The format has no vertex attributes, attributes are ignored.
+class PajekEdgeSink(filename: String, attributes: Seq[(String, String => String)] = Seq()) extends GraphEdgeSink(filename, attributes, Charset.defaultCharset()) {
+
+  protected def writeVertices(classNames: Array[String]) {
+    line("*Vertices %d".format(classNames.length))
+    for (vertex <- 0 until classNames.length) {
+      line("%d \"%s\"".format(vertex + 1, classNames(vertex).replace('"', '\'')))
+    }
+    line("*Edges")
+  }
+
+  def edge(source: Int, target: Int, score: Double) {
+    bw.write((source + 1).toString); bw.write(' ')
+    bw.write((target + 1).toString); bw.write(' ')
+    bw.write(weight(score)); bw.newLine()
+  }
+
+  def close() {
+    bw.close()
+  }
+
+}
+
+//GraphML with a label and the attributes as data of every node and a weight of every edge
+class GraphMLEdgeSink(filename: String, attributes: Seq[(String, String => String)] = Seq()) extends GraphEdgeSink(filename, attributes, Charset.forName("utf-8")) {
+
+  protected def writeVertices(classNames: Array[String]) {
+    line("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+    line("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">")
+    line("  <key id=\"label\" for=\"node\" attr.name=\"label\" attr.type=\"string\"/>")
+    attributes.zipWithIndex.foreach({ case ((name, value), k) =>
+      line("  <key id=\"a%d\" for=\"node\" attr.name=\"%s\" attr.type=\"string\"/>".format(k, GraphEdgeSink.xml(name)))
+    })
+    line("  <key id=\"weight\" for=\"edge\" attr.name=\"weight\" attr.type=\"double\"/>")
+    line("  <graph id=\"G\" edgedefault=\"undirected\">")
+    for (vertex <- 0 until classNames.length) {
+      bw.write("    <node id=\"n%d\"><data key=\"label\">%s</data>".format(vertex, GraphEdgeSink.xml(classNames(vertex))))
+      attributeValues(classNames(vertex)).zipWithIndex.foreach({ case (value, k) =>
+        bw.write("<data key=\"a%d\">%s</data>".format(k, GraphEdgeSink.xml(value)))
+      })
+      line("</node>")
+    }
+  }
+
+  def edge(source: Int, target: Int, score: Double) {
+    bw.write("    <edge source=\"n"); bw.write(source.toString)
+    bw.write("\" target=\"n"); bw.write(target.toString)
+    bw.write("\"><data key=\"weight\">"); bw.write(weight(score)); bw.write("</data></edge>"); bw.newLine()
+  }
+
+  def close() {
+    line("  </graph>")
+    line("</graphml>")
+    bw.close()
+  }
+
+}
+
+//GEXF 1.2 of Gephi, with the attributes as node attributes and weighted edges
+class GexfEdgeSink(filename: String, attributes: Seq[(String, String => String)] = Seq()) extends GraphEdgeSink(filename, attributes, Charset.forName("utf-8")) {
+  private var edges = 0L
+
+  protected def writeVertices(classNames: Array[String]) {
+    edges = 0
+    line("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+    line("<gexf xmlns=\"http://www.gexf.net/1.2draft\" version=\"1.2\">")
+    line("  <graph mode=\"static\" defaultedgetype=\"undirected\">")
+    line("    <attributes class=\"node\">")
+    attributes.zipWithIndex.foreach({ case ((name, value), k) =>
+      line("      <attribute id=\"%d\" title=\"%s\" type=\"string\"/>".format(k, GraphEdgeSink.xml(name)))
+    })
+    line("    </attributes>")
+    line("    <nodes>")
+    for (vertex <- 0 until classNames.length) {
+      bw.write("      <node id=\"%d\" label=\"%s\"><attvalues>".format(vertex, GraphEdgeSink.xml(classNames(vertex))))
+      attributeValues(classNames(vertex)).zipWithIndex.foreach({ case (value, k) =>
+        bw.write("<attvalue for=\"%d\" value=\"%s\"/>".format(k, GraphEdgeSink.xml(value)))
+      })
+      line("</attvalues></node>")
+    }
+    line("    </nodes>")
+    line("    <edges>")
+  }
+
+  def edge(source: Int, target: Int, score: Double) {
+    bw.write("      <edge id=\""); bw.write(edges.toString)
+    bw.write("\" source=\""); bw.write(source.toString)
+    bw.write("\" target=\""); bw.write(target.toString)
+    bw.write("\" weight=\""); bw.write(weight(score)); bw.write("\"/>"); bw.newLine()
+    edges += 1
+  }
+
+  def close() {
+    line("    </edges>")
+    line("  </graph>")
+    line("</gexf>")
+    bw.close()
+  }
+
+}
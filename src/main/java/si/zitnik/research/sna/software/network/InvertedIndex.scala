@@ -0,0 +1,87 @@
+package si.zitnik.research.sna.software.network
+
+import si.zitnik.research.sna.software.model.CommentCorpus
+
+//Index of the documents of corpus for which indexed holds, by default all of them
+class InvertedIndex(val corpus: CommentCorpus, indexed: Int => Boolean = _ => true) {
+
+  //term -> ascending ids of documents containing it
+  val postings: Array[Array[Int]] = {
+    val sizes = new Array[Int](corpus.termCount)
+    for (doc <- 0 until corpus.size if indexed(doc)) {
+      corpus.documentTerms(doc).foreach(term => sizes(term) += 1)
+    }
+
+    val retVal = sizes.map(size => new Array[Int](size))
+    val filled = new Array[Int](corpus.termCount)
+    for {
+      doc <- 0 until corpus.size
+      if indexed(doc)
+      term <- corpus.documentTerms(doc)
+    } {
+      retVal(term)(filled(term)) = doc
+      filled(term) += 1
+    }
+    retVal
+  }
+
+  def size = corpus.size
+
+  /**
+   * Counts shared terms between document i and every document j, jFrom <= j < jUntil, that has at least one term in common.
+   * Ids of such documents are stored (unordered) into touched and their counts into overlaps(j - jFrom).
+   * Returns the number of touched documents; callers must reset overlaps for them before the next call.
+   */
+  def countOverlaps(i: Int, jFrom: Int, jUntil: Int, overlaps: Array[Int], touched: Array[Int]): Int = {
+    var touchedCount = 0
+
+    corpus.documentTerms(i).foreach(term => {
+      val docs = postings(term)
+      var k = InvertedIndex.lowerBound(docs, 0, docs.length, jFrom)
+      while (k < docs.length && docs(k) < jUntil) {
+        val j = docs(k)
+        if (overlaps(j - jFrom) == 0) {
+          touched(touchedCount) = j
+          touchedCount += 1
+        }
+        overlaps(j - jFrom) += 1
+        k += 1
+      }
+    })
+
+    touchedCount
+  }
+
+  //countOverlaps against all documents j < i
+  def countOverlaps(i: Int, overlaps: Array[Int], touched: Array[Int]): Int = countOverlaps(i, 0, i, overlaps, touched)
+
+}
+
+object InvertedIndex {
+
+  //first position in values(from until until), sorted ascending, holding a value >= key
+  def lowerBound(values: Array[Int], from: Int, until: Int, key: Int) = {
+    val position = java.util.Arrays.binarySearch(values, from, until, key)
+    if (position >= 0) position else -position - 1
+  }
+
+  //number of shared values of two ascending arrays
+  def sortedOverlap(termsA: Array[Int], termsB: Array[Int]) = {
+    var retVal = 0
+    var a = 0
+    var b = 0
+    while (a < termsA.length && b < termsB.length) {
+      if (termsA(a) < termsB(b)) {
+        a += 1
+      } else if (termsA(a) > termsB(b)) {
+        b += 1
+      } else {
+        retVal += 1
+        a += 1
+        b += 1
+      }
+    }
+    retVal
+  }
+
+}
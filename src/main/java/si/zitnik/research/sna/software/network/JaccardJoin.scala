@@ -0,0 +1,129 @@
+package si.zitnik.research.sna.software.network
+
+import com.typesafe.scalalogging.slf4j.Logging
+import java.util.concurrent.atomic.AtomicLong
+
+//Exact Jaccard similarity join (AllPairs): size filter plus prefix filter over terms ordered by document frequency
+class JaccardJoin(index: InvertedIndex, threshold: Double) extends PairMeasure with Logging {
+  //slack for threshold products like 0.7*10, filters may only become looser because of it
+  private val Epsilon = 1e-9
+
+  //terms of every document as ranks of ascending document frequency, rare terms first
+  private val rankedTerms: Array[Array[Int]] = {
+    val ranks = new Array[Int](index.postings.length)
+    index.postings.indices.sortBy(term => (index.postings(term).length, term)).zipWithIndex.foreach({ case (term, rank) => ranks(term) = rank })
+    index.corpus.documentTerms.map(terms => terms.map(ranks(_)).sorted)
+  }
+
+  //a pair reaching the threshold shares a term within the prefixes of both documents
+  private def prefixLength(size: Int) = {
+    math.max(0, math.min(size, size - math.ceil(threshold * size - Epsilon).toInt + 1))
+  }
+
+  //ranked term -> ascending ids of documents having it in their prefix
+  private val prefixLists: Array[Array[Int]] = {
+    val sizes = new Array[Int](index.postings.length)
+    rankedTerms.foreach(terms => (0 until prefixLength(terms.length)).foreach(k => sizes(terms(k)) += 1))
+
+    val retVal = sizes.map(size => new Array[Int](size))
+    val filled = new Array[Int](index.postings.length)
+    for {
+      doc <- 0 until index.size
+      k <- 0 until prefixLength(rankedTerms(doc).length)
+    } {
+      val term = rankedTerms(doc)(k)
+      retVal(term)(filled(term)) = doc
+      filled(term) += 1
+    }
+    retVal
+  }
+
+  private val sizeFiltered = new AtomicLong()
+  private val candidates = new AtomicLong()
+
+  def size = index.size
+
+  def newScanner() = new PairScanner {
+    private val seen = Array.fill(index.size)(-1)
+    private val found = new Array[Int](index.size)
+
+    def scan(i: Int, jFrom: Int, jUntil: Int, pairs: PairBuffer) {
+      val terms = rankedTerms(i)
+
+      if (terms.isEmpty) {
+        //nothing to do
+      } else if (threshold <= 0) {
+        //every non-empty pair reaches the threshold, even without shared words
+        var count = 0
+        for (j <- jFrom until jUntil if !index.corpus.isEmpty(j)) {
+          addIfReached(i, j, pairs)
+          count += 1
+        }
+        candidates.addAndGet(count)
+      } else {
+        //probe: documents sharing a prefix term that pass the size filter
+        var foundCount = 0
+        var rejected = 0
+        for (k <- 0 until prefixLength(terms.length)) {
+          val list = prefixLists(terms(k))
+          var e = InvertedIndex.lowerBound(list, 0, list.length, jFrom)
+          while (e < list.length && list(e) < jUntil) {
+            val y = list(e)
+            if (seen(y) != i) {
+              seen(y) = i
+              val sizeY = rankedTerms(y).length
+              if (math.min(terms.length, sizeY) >= threshold * math.max(terms.length, sizeY) - Epsilon) {
+                found(foundCount) = y
+                foundCount += 1
+              } else {
+                rejected += 1
+              }
+            }
+            e += 1
+          }
+        }
+        sizeFiltered.addAndGet(rejected)
+        candidates.addAndGet(foundCount)
+
+        //verify
+        java.util.Arrays.sort(found, 0, foundCount)
+        for (k <- 0 until foundCount) {
+          addIfReached(i, found(k), pairs)
+        }
+      }
+    }
+  }
+
+  private def addIfReached(i: Int, j: Int, pairs: PairBuffer) {
+    val shared = InvertedIndex.sortedOverlap(rankedTerms(i), rankedTerms(j))
+    val jaccard = shared * 1.0 / (rankedTerms(i).length + rankedTerms(j).length - shared)
+    if (jaccard >= threshold) {
+      pairs.add(i, j, jaccard)
+    }
+  }
+
+  //Pairs (i, j), i > j, of documents with Jaccard score >= threshold, ordered by i and then j
+  def join(): PairBuffer = {
+    val retVal = new PairBuffer()
+    join(retVal.addAll(_))
+    retVal
+  }
+
+  //join handing the pairs to rows one row block at a time, see PairEngine.foreachRowBlock
+  def join(rows: PairBuffer => Unit) {
+    sizeFiltered.set(0)
+    candidates.set(0)
+
+    var edges = 0L
+    PairEngine.foreachRowBlock(this)(pairs => {
+      edges += pairs.size
+      rows(pairs)
+    })
+
+    val nonEmpty = rankedTerms.count(!_.isEmpty).toLong
+    val allPairs = nonEmpty * (nonEmpty - 1) / 2
+    logger.info("\tJaccard join %.2f: %d pairs, %d candidates dropped by size filter, %d candidates after prefix filter, %d intersections avoided, %d edges".format(
+      threshold, allPairs, sizeFiltered.get(), candidates.get(), allPairs - candidates.get(), edges))
+  }
+
+}
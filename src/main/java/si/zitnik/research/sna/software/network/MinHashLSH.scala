@@ -0,0 +1,87 @@
+package si.zitnik.research.sna.software.network
+
+import collection.mutable
+import si.zitnik.research.sna.software.model.CommentCorpus
+import collection.mutable.ArrayBuffer
+
+//Approximate Jaccard join: MinHash signatures of bands * rows values, documents sharing a whole band become candidates.
+//More bands or fewer rows raise recall (and the number of candidates), a band matches with probability about J^rows.
+class MinHashLSH(corpus: CommentCorpus, bands: Int, rows: Int, seed: Long = 42L) {
+  require(bands > 0 && rows > 0, "MinHash needs at least one band and one row")
+
+  private val hashCount = bands * rows
+
+  private val random = new java.util.Random(seed)
+  private val multipliers = Array.fill(hashCount)(random.nextLong() | 1L)
+  private val offsets = Array.fill(hashCount)(random.nextLong())
+
+  //MinHash signature of every document, empty documents have none
+  val signatures: Array[Array[Int]] = corpus.documentTerms.map(terms => {
+    if (terms.isEmpty) {
+      Array[Int]()
+    } else {
+      val signature = Array.fill(hashCount)(Int.MaxValue)
+      terms.foreach(term => {
+        for (k <- 0 until hashCount) {
+          val hash = ((multipliers(k) * term + offsets(k)) >>> 33).toInt
+          if (hash < signature(k)) {
+            signature(k) = hash
+          }
+        }
+      })
+      signature
+    }
+  })
+
+  //Pairs, encoded as i * size + j with i > j, that share at least one band
+  def candidates() = {
+    val retVal = mutable.HashSet[Long]()
+    val n = corpus.size.toLong
+
+    for (band <- 0 until bands) {
+      val buckets = mutable.HashMap[Long, ArrayBuffer[Int]]()
+
+      for (doc <- 0 until corpus.size if !corpus.isEmpty(doc)) {
+        val signature = signatures(doc)
+        var key = 17L
+        for (row <- band * rows until (band + 1) * rows) {
+          key = key * 31 + signature(row)
+        }
+        buckets.getOrElseUpdate(key, ArrayBuffer[Int]()).append(doc)
+      }
+
+      //documents are appended in ascending order, so docs(a) > docs(b)
+      buckets.values.filter(_.size > 1).foreach(docs => {
+        for {
+          a <- 0 until docs.size
+          b <- 0 until a
+        } {
+          retVal.add(docs(a) * n + docs(b))
+        }
+      })
+    }
+
+    retVal
+  }
+
+  //Candidate pairs (i, j), i > j, verified to have Jaccard score >= threshold, scored by it and ordered by i and then j
+  def join(threshold: Double): PairBuffer = {
+    val n = corpus.size
+    val retVal = new PairBuffer()
+
+    val sorted = candidates().toArray
+    java.util.Arrays.sort(sorted)
+    sorted.foreach(pair => {
+      val i = (pair / n).toInt
+      val j = (pair % n).toInt
+      val shared = InvertedIndex.sortedOverlap(corpus.documentTerms(i), corpus.documentTerms(j))
+      val jaccard = shared * 1.0 / (corpus.documentTerms(i).length + corpus.documentTerms(j).length - shared)
+      if (jaccard >= threshold) {
+        retVal.add(i, j, jaccard)
+      }
+    })
+
+    retVal
+  }
+
+}
@@ -1,8 +1,8 @@
 package si.zitnik.research.sna.software.network
 
-import collection.mutable.ArrayBuffer
 import collection.mutable
-import breeze.linalg.SparseVector
+import collection.mutable.ArrayBuffer
+import si.zitnik.research.sna.software.model.CommentCorpus
 
 /**
  * Created with IntelliJ IDEA.
@@ -13,146 +13,248 @@ import breeze.linalg.SparseVector
  */
 object NetworkBuilder {
 
-  def buildNetworkFulltextMatch(buffer: ArrayBuffer[(String, String)]) = {
-    val retVal = ArrayBuffer[(String, String)]()
+  //Classes with equal non-blank text, grouped by a hash of the text; groups ordered by their first class, classes in buffer.toMap order
+  def buildGroupsFulltextMatch(buffer: ArrayBuffer[(String, String)]): ArrayBuffer[ArrayBuffer[String]] = {
+    val classMap = buffer.toMap
+    val classNames = classMap.keySet.toArray
+
+    fulltextGroups(classNames.map(classMap(_))).map(_.map(classNames(_)))
+  }
+
+  //Edges of every clique of buildGroupsFulltextMatch, ordered as the pairwise text comparison would emit them
+  def buildNetworkFulltextMatch(buffer: ArrayBuffer[(String, String)]): ArrayBuffer[(String, String)] = {
+    collect(buildNetworkFulltextMatch(buffer, _))
+  }
 
+  def buildNetworkFulltextMatch(buffer: ArrayBuffer[(String, String)], sink: EdgeSink) {
     val classMap = buffer.toMap
     val classNames = classMap.keySet.toArray
 
-    for {
-      i <- 0 until classNames.length
-      j <- 0 until i
-      classA = classNames(i)
-      classB = classNames(j)
-    } {
-      val textA = classMap(classA)
-      val textB = classMap(classB)
-
-      if (!textA.trim.isEmpty && !textB.trim.isEmpty) {
-        if (textA.equals(textB)) {
-          retVal.append(((classA, classB)))
-        }
+    val groupOf = new Array[ArrayBuffer[Int]](classNames.length)
+    fulltextGroups(classNames.map(classMap(_))).foreach(group => group.foreach(groupOf(_) = group))
+
+    EdgeSink.pushing(Seq(sink), classNames) {
+      for (i <- 0 until classNames.length if groupOf(i) != null) {
+        //members are ascending, so the ones before i are its pairs
+        groupOf(i).takeWhile(_ < i).foreach(j => sink.edge(i, j, 1.0))
       }
     }
+  }
 
-    retVal
+  //groups of at least two documents sharing the same non-blank text
+  private def fulltextGroups(texts: Array[String]) = {
+    val buckets = mutable.LinkedHashMap[String, ArrayBuffer[Int]]()
+    for (doc <- 0 until texts.length if !texts(doc).trim.isEmpty) {
+      buckets.getOrElseUpdate(texts(doc), ArrayBuffer[Int]()).append(doc)
+    }
+    buckets.values.filter(_.size > 1).to[ArrayBuffer]
   }
 
   //Bag of word match, all classes matching i or more times are matched
-  def buildNetworkBOW(buffer: ArrayBuffer[(String, String)], minMatches: Int) = {
-    val retVal = ArrayBuffer[(String, String)]()
+  //Only pairs sharing a posting list of the inverted index are counted, see BOWMeasure
+  def buildNetworkBOW(buffer: ArrayBuffer[(String, String)], minMatches: Int): ArrayBuffer[(String, String)] = {
+    buildNetworkBOW(CommentCorpus(buffer), minMatches)
+  }
 
-    val classMap = buffer.toMap
-    val classNames = classMap.keySet.toArray
+  def buildNetworkBOW(corpus: CommentCorpus, minMatches: Int): ArrayBuffer[(String, String)] = {
+    collect(buildNetworkBOW(corpus, minMatches, _))
+  }
 
-    for {
-      i <- 0 until classNames.length
-      j <- 0 until i
-      classA = classNames(i)
-      classB = classNames(j)
-    } {
-      val textA = classMap(classA)
-      val textB = classMap(classB)
-
-      if (!textA.trim.isEmpty && !textB.trim.isEmpty) {
-        if (classMap(classA).split(" ").toSet.intersect(classMap(classB).split(" ").toSet).size >= minMatches) {
-          retVal.append(((classA, classB)))
-        }
-      }
+  //scores are the numbers of shared words
+  def buildNetworkBOW(corpus: CommentCorpus, minMatches: Int, sink: EdgeSink) {
+    val measure = new BOWMeasure(new InvertedIndex(corpus), minMatches)
+    EdgeSink.pushing(Seq(sink), corpus.classNames) {
+      PairEngine.foreachRowBlock(measure)(push(_, sink))
     }
-
-    retVal
   }
 
 
   //Bag of word match, all classes matching by Jaccard score threshold
-  def buildNetworkBOWJaccard(buffer: ArrayBuffer[(String, String)], scoreThreshold: Double) = {
-    val retVal = ArrayBuffer[(String, String)]()
+  //Computed as an exact similarity join, see JaccardJoin
+  def buildNetworkBOWJaccard(buffer: ArrayBuffer[(String, String)], scoreThreshold: Double): ArrayBuffer[(String, String)] = {
+    buildNetworkBOWJaccard(CommentCorpus(buffer), scoreThreshold)
+  }
 
-    val classMap = buffer.toMap
-    val classNames = classMap.keySet.toArray
+  def buildNetworkBOWJaccard(corpus: CommentCorpus, scoreThreshold: Double): ArrayBuffer[(String, String)] = {
+    collect(buildNetworkBOWJaccard(corpus, scoreThreshold, _))
+  }
 
-    for {
-      i <- 0 until classNames.length
-      j <- 0 until i
-      classA = classNames(i)
-      classB = classNames(j)
-    } {
-      val textA = classMap(classA)
-      val textB = classMap(classB)
+  def buildNetworkBOWJaccard(corpus: CommentCorpus, scoreThreshold: Double, sink: EdgeSink) {
+    val join = new JaccardJoin(new InvertedIndex(corpus), scoreThreshold)
+    EdgeSink.pushing(Seq(sink), corpus.classNames) {
+      join.join(push(_, sink))
+    }
+  }
 
-      if (!textA.trim.isEmpty && !textB.trim.isEmpty) {
-        val setA = textA.split(" ").toSet
-        val setB = textB.split(" ").toSet
+  //Approximate buildNetworkBOWJaccard: MinHash/LSH candidates verified exactly, so it returns a subset of the exact edges
+  def buildNetworkBOWJaccardApprox(buffer: ArrayBuffer[(String, String)], scoreThreshold: Double, bands: Int = 50, rows: Int = 3): ArrayBuffer[(String, String)] = {
+    buildNetworkBOWJaccardApprox(CommentCorpus(buffer), scoreThreshold, bands, rows)
+  }
 
-        val jaccard = setA.intersect(setB).size*1.0/setA.union(setB).size
+  def buildNetworkBOWJaccardApprox(corpus: CommentCorpus, scoreThreshold: Double, bands: Int, rows: Int): ArrayBuffer[(String, String)] = {
+    collect(buildNetworkBOWJaccardApprox(corpus, scoreThreshold, bands, rows, _))
+  }
 
-        if (jaccard >= scoreThreshold) {
-          retVal.append(((classA, classB)))
-        }
-      }
+  //scores are the Jaccard scores of the verified candidates
+  def buildNetworkBOWJaccardApprox(corpus: CommentCorpus, scoreThreshold: Double, bands: Int, rows: Int, sink: EdgeSink) {
+    val lsh = new MinHashLSH(corpus, bands, rows)
+    EdgeSink.pushing(Seq(sink), corpus.classNames) {
+      push(lsh.join(scoreThreshold), sink)
     }
-
-    retVal
   }
 
-  def buildNetworkTFIDFCosine(documents: ArrayBuffer[(String, String)], scoreThreshold: Double) = {
-    val retVal = ArrayBuffer[(String, String)]()
+  //Cosine of TF-IDF document vectors, computed as a blockwise sparse product of the normalized vectors, see TFIDFMatrix
+  //Documents keep the order of the buffer
+  def buildNetworkTFIDFCosine(documents: ArrayBuffer[(String, String)], scoreThreshold: Double): ArrayBuffer[(String, String)] = {
+    buildNetworkTFIDFCosine(new CommentCorpus(documents.map(_._1).toArray, documents.map(_._2).toArray), scoreThreshold)
+  }
 
-    val n = documents.size //number of documents
-    val wordToIndex = documents.flatMap(_._2.split(" ")).toSet[String].zipWithIndex.toMap //index of words within word vector
-    val wordToDocumentFrequencies = mutable.HashMap[String, Int]()
+  def buildNetworkTFIDFCosine(corpus: CommentCorpus, scoreThreshold: Double): ArrayBuffer[(String, String)] = {
+    collect(buildNetworkTFIDFCosine(corpus, scoreThreshold, _))
+  }
 
-    //fill wordToDocumentFrequencies
-    documents.foreach(document => {
-      document._2.split(" ").toSet[String].foreach(word => {
-        wordToDocumentFrequencies.put(word, wordToDocumentFrequencies.getOrElse(word, 0)+1)
-      })
-    })
+  def buildNetworkTFIDFCosine(corpus: CommentCorpus, scoreThreshold: Double, sink: EdgeSink) {
+    val measure = new TFIDFMatrix(corpus).measure(scoreThreshold)
+    EdgeSink.pushing(Seq(sink), corpus.classNames) {
+      PairEngine.foreachRowBlock(measure)(push(_, sink))
+    }
+  }
 
+  //All BOW, BOWJaccard and TFIDFCosine networks in one pass: each pair sharing a word is scored once and routed to every bucket it reaches
+  def buildNetworkSweep(buffer: ArrayBuffer[(String, String)], minMatches: Seq[Int], jaccardThresholds: Seq[Double], cosineThresholds: Seq[Double]): NetworkSweep = {
+    buildNetworkSweep(CommentCorpus(buffer), minMatches, jaccardThresholds, cosineThresholds)
+  }
 
-    val documentVectorCache = mutable.HashMap[String, SparseVector[Double]]()
+  def buildNetworkSweep(corpus: CommentCorpus, minMatches: Seq[Int], jaccardThresholds: Seq[Double], cosineThresholds: Seq[Double]): NetworkSweep = {
+    collectSweep(buildNetworkSweep(corpus, _), minMatches, jaccardThresholds, cosineThresholds)
+  }
 
-    val calculateWeightVector = (documentText: String) => {
-      val retVal = SparseVector.zeros[Double](wordToIndex.keySet.size)
+  //Sweep into a sink per bucket, scored on the pair engine and pushed row block by row block, see SweepMeasure
+  def buildNetworkSweep(corpus: CommentCorpus, sinks: SweepSinks) {
+    require(sinks.bow.forall(_._1 > 0) && sinks.bowJaccard.forall(_._1 > 0), "Sweep only scores pairs sharing at least one word")
 
-      val words = documentText.split(" ")
+    val all = Array.fill(corpus.size)(true)
+    val measure = SweepMeasure(corpus, sinks, all)
+    val router = new SweepRouter(corpus, sinks, all, new PairBuffer(), new PairBuffer(), new PairBuffer())
+    EdgeSink.pushing(sinks.all, corpus.classNames) {
+      PairEngine.foreachRowBlock(measure)(router.route(_))
+      router.finish()
+    }
+  }
 
-      if (words.size != 0 && !documentText.trim.isEmpty) {
-        val counts = words.groupBy(x=>x).mapValues(x=>x.length)
-        val maxWordCountInDoc = counts.values.max
+  //Sweep of corpus from the sweep of previousCorpus: pairs of unchanged documents keep their edges and only the documents
+  //whose text changed are scored again, against every document sharing a word. For TFIDFCosine this also covers documents
+  //with a term whose document frequency shifted, and every document when the number of documents changed.
+  def updateNetworkSweep(previousCorpus: CommentCorpus, previous: NetworkSweep, corpus: CommentCorpus, minMatches: Seq[Int], jaccardThresholds: Seq[Double], cosineThresholds: Seq[Double]): NetworkSweep = {
+    collectSweep(updateNetworkSweep(previousCorpus, previous, corpus, _), minMatches, jaccardThresholds, cosineThresholds)
+  }
 
-        words.foreach(word => {
-          val tf = counts(word)*1.0/maxWordCountInDoc
-          val idf = math.log(n*1.0/wordToDocumentFrequencies(word))
-          retVal(wordToIndex(word)) = tf*idf
-        })
-      }
+  //Update into a sink per bucket from previous networks held as a NetworkSweep, which keeps no scores
+  def updateNetworkSweep(previousCorpus: CommentCorpus, previous: NetworkSweep, corpus: CommentCorpus, sinks: SweepSinks) {
+    //toList, as the iterator of a Double range computes its values differently than foreach and map
+    require(previous.bow.map(_._1).toList == sinks.bow.map(_._1).toList && previous.bowJaccard.map(_._1).toList == sinks.bowJaccard.map(_._1).toList && previous.tfidfCosine.map(_._1).toList == sinks.tfidfCosine.map(_._1).toList,
+      "Previous sweep has other buckets")
 
-      retVal
-    }:SparseVector[Double]
+    updateNetworkSweep(previousCorpus, new PreviousNetworks(unscored(previous.bow), unscored(previous.bowJaccard), unscored(previous.tfidfCosine)), corpus, sinks)
+  }
 
+  //edges of the lowest bucket
+  private def unscored[T: Ordering](buckets: Seq[(T, ArrayBuffer[(String, String)])]) = (edge: (String, String, Double) => Unit) => {
+    if (buckets.nonEmpty) {
+      buckets.minBy(_._1)._2.foreach(pair => edge(pair._1, pair._2, Double.NaN))
+    }
+  }
 
-    for {
-      i <- 0 until documents.size
-      j <- 0 until i
-      classA = documents(i)._1
-      classB = documents(j)._1
-      docVectorA = documentVectorCache.getOrElseUpdate(classA, calculateWeightVector(documents(i)._2))
-      docVectorB = documentVectorCache.getOrElseUpdate(classB, calculateWeightVector(documents(j)._2))
-    } {
-      val dot = docVectorA.dot(docVectorB)
+  /**
+   * Update into a sink per bucket. BOW and BOWJaccard scores of a pair only depend on the words of its two documents, so
+   * the previous edges of pairs of unchanged documents are kept with their scores. TFIDFCosine scores also depend on the
+   * document frequencies of the terms and the number of documents, so only pairs of documents whose terms all kept their
+   * document frequency keep their edges, none when the number of documents changed.
+   * Kept edges are pushed as read, scored again only where previous has no exact score; the other pairs are scored against
+   * every document sharing a word, see SweepMeasure, and merged with them, so edges are pushed in the order of buildNetworkSweep.
+   */
+  def updateNetworkSweep(previousCorpus: CommentCorpus, previous: PreviousNetworks, corpus: CommentCorpus, sinks: SweepSinks) {
+    require(sinks.bow.forall(_._1 > 0) && sinks.bowJaccard.forall(_._1 > 0), "Sweep only scores pairs sharing at least one word")
+
+    val n = corpus.size
+    val classIds = new java.util.HashMap[String, Integer]()
+    corpus.classNames.zipWithIndex.foreach(name => classIds.put(name._1, name._2))
+    val previousClassIds = new java.util.HashMap[String, Integer]()
+    previousCorpus.classNames.zipWithIndex.foreach(name => previousClassIds.put(name._1, name._2))
+
+    val changed = Array.tabulate(n)(i => {
+      val previousDoc = previousClassIds.get(corpus.classNames(i))
+      previousDoc == null || previousCorpus.texts(previousDoc) != corpus.texts(i)
+    })
+    val reweighted = if (sinks.tfidfCosine.isEmpty) changed else {
+      val shifted = Array.tabulate(corpus.termCount)(term => {
+        val previousTerm = previousCorpus.termId(corpus.term(term))
+        previousCorpus.size != n || previousTerm < 0 || previousCorpus.documentFrequencies(previousTerm) != corpus.documentFrequencies(term)
+      })
+      Array.tabulate(n)(i => changed(i) || corpus.documentTerms(i).exists(shifted(_)))
+    }
 
-      if (dot != 0) {
-        val cosine = dot / (docVectorA.norm(2) * docVectorB.norm(2))
+    //scoring most documents again costs more than a new sweep
+    if (changed.count(identity) * 2 > n) {
+      return buildNetworkSweep(corpus, sinks)
+    }
+    //the same holds for the TFIDFCosine scores alone, then every pair is scored and only BOW and BOWJaccard edges kept
+    val rescored = if (reweighted.count(identity) * 2 > n) Array.fill(n)(true) else reweighted
+
+    val overlap = (i: Int, j: Int) => InvertedIndex.sortedOverlap(corpus.documentTerms(i), corpus.documentTerms(j))
+    lazy val matrix = new TFIDFMatrix(corpus)
+    val keptBOW = kept(previous.bow, sinks.bow.nonEmpty, classIds, !changed(_), overlap(_, _))
+    val keptJaccard = kept(previous.bowJaccard, sinks.bowJaccard.nonEmpty, classIds, !changed(_), (i, j) => SweepMeasure.jaccard(corpus, i, j, overlap(i, j)))
+    val keptCosine = kept(previous.tfidfCosine, sinks.tfidfCosine.nonEmpty && rescored.contains(false), classIds, !rescored(_), matrix.dot(_, _))
+
+    val measure = SweepMeasure(corpus, sinks, rescored)
+    val router = new SweepRouter(corpus, sinks, changed, keptBOW, keptJaccard, keptCosine)
+    EdgeSink.pushing(sinks.all, corpus.classNames) {
+      PairEngine.foreachRowBlock(measure)(router.route(_))
+      router.finish()
+    }
+  }
 
-        if (cosine >= scoreThreshold) {
-          retVal.append(((classA, classB)))
+  //previous edges between kept documents as pairs (i, j), i > j, ordered by i and then j, scored where they have no score
+  private def kept(edges: ((String, String, Double) => Unit) => Unit, read: Boolean, classIds: java.util.HashMap[String, Integer], keep: Int => Boolean, score: (Int, Int) => Double) = {
+    val retVal = new PairBuffer()
+    if (read) {
+      edges((source, target, previousScore) => {
+        val i = classIds.get(source)
+        val j = classIds.get(target)
+        if (i != null && j != null && i.intValue != j.intValue && keep(i) && keep(j)) {
+          val first = math.max(i, j)
+          val second = math.min(i, j)
+          retVal.add(first, second, if (previousScore.isNaN) score(first, second) else previousScore)
         }
-      }
+      })
+    }
+    retVal.distinctByPair()
+  }
+
+  //pairs of a row block of the pair engine, in their order
+  private def push(pairs: PairBuffer, sink: EdgeSink) {
+    for (k <- 0 until pairs.size) {
+      sink.edge(pairs.first(k), pairs.second(k), pairs.score(k))
     }
+  }
+
+  //edges of build as class name pairs
+  private def collect(build: EdgeSink => Unit) = {
+    val sink = new IntPairEdgeSink()
+    build(sink)
+    sink.toClassPairs
+  }
 
-    retVal
+  private def collectSweep(build: SweepSinks => Unit, minMatches: Seq[Int], jaccardThresholds: Seq[Double], cosineThresholds: Seq[Double]) = {
+    val bow = minMatches.map(minMatch => (minMatch, new IntPairEdgeSink()))
+    val bowJaccard = jaccardThresholds.map(threshold => (threshold, new IntPairEdgeSink()))
+    val tfidfCosine = cosineThresholds.map(threshold => (threshold, new IntPairEdgeSink()))
+    build(new SweepSinks(bow, bowJaccard, tfidfCosine))
+    new NetworkSweep(
+      bow.map(bucket => (bucket._1, bucket._2.toClassPairs)),
+      bowJaccard.map(bucket => (bucket._1, bucket._2.toClassPairs)),
+      tfidfCosine.map(bucket => (bucket._1, bucket._2.toClassPairs)))
   }
 
 }
@@ -0,0 +1,27 @@
+package si.zitnik.research.sna.software.network
+
+import collection.mutable.ArrayBuffer
+
+//Networks of all thresholds of one sweep, every edge is listed in each bucket whose threshold it reaches
+class NetworkSweep(val bow: Seq[(Int, ArrayBuffer[(String, String)])],
+                   val bowJaccard: Seq[(Double, ArrayBuffer[(String, String)])],
+                   val tfidfCosine: Seq[(Double, ArrayBuffer[(String, String)])]) {
+
+}
+
+//Sinks of all thresholds of one sweep, every edge is pushed into each bucket whose threshold it reaches
+class SweepSinks(val bow: Seq[(Int, EdgeSink)],
+                 val bowJaccard: Seq[(Double, EdgeSink)],
+                 val tfidfCosine: Seq[(Double, EdgeSink)]) {
+
+  def all = bow.map(_._2) ++ bowJaccard.map(_._2) ++ tfidfCosine.map(_._2)
+
+}
+
+//Previous networks of a sweep, of each measure its lowest bucket, which holds the edges of all others. Each calls its
+//argument with every edge of the network and its score, NaN where the network does not keep the score exactly.
+class PreviousNetworks(val bow: ((String, String, Double) => Unit) => Unit,
+                       val bowJaccard: ((String, String, Double) => Unit) => Unit,
+                       val tfidfCosine: ((String, String, Double) => Unit) => Unit) {
+
+}
@@ -0,0 +1,89 @@
+package si.zitnik.research.sna.software.network
+
+//Growable list of scored document pairs kept in primitive arrays
+class PairBuffer(initialCapacity: Int = 1024) {
+  private var pairs = new Array[Int](math.max(1, initialCapacity) * 2)
+  private var scores = new Array[Double](math.max(1, initialCapacity))
+  private var count = 0
+
+  def add(i: Int, j: Int, score: Double) {
+    if (count == scores.length) {
+      pairs = java.util.Arrays.copyOf(pairs, pairs.length * 2)
+      scores = java.util.Arrays.copyOf(scores, scores.length * 2)
+    }
+    pairs(2 * count) = i
+    pairs(2 * count + 1) = j
+    scores(count) = score
+    count += 1
+  }
+
+  def size = count
+
+  def first(k: Int) = pairs(2 * k)
+
+  def second(k: Int) = pairs(2 * k + 1)
+
+  def score(k: Int) = scores(k)
+
+  //keeps the arrays for the next pairs
+  def clear() {
+    count = 0
+  }
+
+  def addAll(other: PairBuffer) {
+    for (k <- 0 until other.size) {
+      add(other.first(k), other.second(k), other.score(k))
+    }
+  }
+
+  //copy of pairs(from until until) in arrays of its size
+  def slice(from: Int, until: Int) = {
+    val retVal = new PairBuffer(until - from)
+    for (k <- from until until) {
+      retVal.add(first(k), second(k), score(k))
+    }
+    retVal
+  }
+
+  //copy of the pairs ordered by first and then second, without repeated pairs, of which the first is kept
+  def distinctByPair() = {
+    var order = Array.tabulate(count)(identity)
+    var merged = new Array[Int](count)
+    val before = (a: Int, b: Int) => first(a) < first(b) || (first(a) == first(b) && second(a) <= second(b))
+    var width = 1
+    while (width < count) {
+      var from = 0
+      while (from < count) {
+        val middle = math.min(from + width, count)
+        val until = math.min(from + 2 * width, count)
+        var a = from
+        var b = middle
+        var k = from
+        while (k < until) {
+          if (b >= until || (a < middle && before(order(a), order(b)))) {
+            merged(k) = order(a)
+            a += 1
+          } else {
+            merged(k) = order(b)
+            b += 1
+          }
+          k += 1
+        }
+        from = until
+      }
+      val swap = order
+      order = merged
+      merged = swap
+      width *= 2
+    }
+
+    val retVal = new PairBuffer(count)
+    order.foreach(k => {
+      if (retVal.size == 0 || retVal.first(retVal.size - 1) != first(k) || retVal.second(retVal.size - 1) != second(k)) {
+        retVal.add(first(k), second(k), score(k))
+      }
+    })
+    retVal
+  }
+
+}
@@ -0,0 +1,137 @@
+package si.zitnik.research.sna.software.network
+
+import java.util.concurrent.{ForkJoinTask, RecursiveAction, ForkJoinPool}
+import collection.mutable
+import scala.util.DynamicVariable
+
+//Similarity measure over documents 0 until size, scored pairwise by the engine
+trait PairMeasure {
+  def size: Int
+
+  //called once per worker thread, scanners may keep mutable scratch state
+  def newScanner(): PairScanner
+}
+
+trait PairScanner {
+  //adds every accepted pair (i, j), jFrom <= j < jUntil <= i, to pairs in ascending j
+  def scan(i: Int, jFrom: Int, jUntil: Int, pairs: PairBuffer)
+}
+
+//Enumerates the lower pair triangle of a measure in square tiles scheduled on a fork-join pool
+object PairEngine {
+  val defaultTileSize = 256
+
+  //pools by number of threads, runs use the one of the parallelism of their thread. Pools are kept for later runs and
+  //never shut down, their workers are daemon threads so they do not keep the JVM of a caller alive.
+  private val pools = mutable.HashMap[Int, ForkJoinPool]()
+  private val parallelism = new DynamicVariable[Int](Runtime.getRuntime.availableProcessors())
+
+  private val daemonWorkers = new ForkJoinPool.ForkJoinWorkerThreadFactory {
+    def newThread(pool: ForkJoinPool) = {
+      val retVal = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool)
+      retVal.setDaemon(true)
+      retVal
+    }
+  }
+
+  private def pool = pools.synchronized {
+    pools.getOrElseUpdate(parallelism.value, new ForkJoinPool(parallelism.value, daemonWorkers, null, false))
+  }
+
+  //Runs work with the pairs of its runs scored by at most threads threads, by default one per processor
+  def withParallelism[T](threads: Int)(work: => T): T = parallelism.withValue(math.max(1, threads))(work)
+
+  private class Tile(scanners: ThreadLocal[PairScanner], scratch: ThreadLocal[PairBuffer], rowFrom: Int, rowUntil: Int, columnFrom: Int, columnUntil: Int) extends RecursiveAction {
+    //pairs of row rowFrom + r are pairs(rowStarts(r) until rowStarts(r + 1)), both stay null for a tile without pairs
+    var pairs: PairBuffer = null
+    var rowStarts: Array[Int] = null
+
+    def compute() {
+      //the worker scans into its own buffer, the tile keeps a copy of the size of its pairs
+      val scanner = scanners.get()
+      val buffer = scratch.get()
+      buffer.clear()
+      val starts = new Array[Int](rowUntil - rowFrom + 1)
+      for (i <- rowFrom until rowUntil) {
+        starts(i - rowFrom) = buffer.size
+        if (columnFrom < i) {
+          scanner.scan(i, columnFrom, math.min(columnUntil, i), buffer)
+        }
+      }
+      starts(rowUntil - rowFrom) = buffer.size
+
+      if (buffer.size > 0) {
+        pairs = buffer.slice(0, buffer.size)
+        rowStarts = starts
+      }
+    }
+  }
+
+  //Tiles of rows rowFrom until rowUntil, created when the row block is computed and merged into pairs by row
+  private class RowBlock(scanners: ThreadLocal[PairScanner], scratch: ThreadLocal[PairBuffer], n: Int, tileSize: Int, rowFrom: Int) extends RecursiveAction {
+    private val rowUntil = math.min(n, rowFrom + tileSize)
+    var pairs: PairBuffer = null
+
+    def compute() {
+      val tiles = new java.util.ArrayList[Tile]()
+      (0 to rowFrom by tileSize).foreach(columnFrom => {
+        tiles.add(new Tile(scanners, scratch, rowFrom, rowUntil, columnFrom, math.min(n, columnFrom + tileSize)))
+      })
+      ForkJoinTask.invokeAll(tiles)
+
+      //tiles are ordered by column
+      val filled = (0 until tiles.size).map(tiles.get(_)).filter(_.pairs != null)
+      pairs = new PairBuffer(filled.map(_.pairs.size).sum)
+      for (r <- 0 until rowUntil - rowFrom) {
+        filled.foreach(tile => {
+          for (k <- tile.rowStarts(r) until tile.rowStarts(r + 1)) {
+            pairs.add(tile.pairs.first(k), tile.pairs.second(k), tile.pairs.score(k))
+          }
+        })
+      }
+    }
+  }
+
+  /**
+   * Pairs (i, j), i > j, accepted by the measure, handed to rows on the calling thread one row block at a time, ordered
+   * by i and then j. Only a window of row blocks is scored ahead of rows, so only their pairs are held at once.
+   */
+  def foreachRowBlock(measure: PairMeasure, tileSize: Int = defaultTileSize)(rows: PairBuffer => Unit) {
+    val n = measure.size
+    val scanners = new ThreadLocal[PairScanner] {
+      override def initialValue() = measure.newScanner()
+    }
+    val scratch = new ThreadLocal[PairBuffer] {
+      override def initialValue() = new PairBuffer()
+    }
+
+    val pool = this.pool
+    val window = pool.getParallelism + 1
+    val rowFroms = (0 until n by tileSize).iterator
+    val scheduled = new java.util.ArrayDeque[RowBlock]()
+    try {
+      while (rowFroms.hasNext || !scheduled.isEmpty) {
+        while (rowFroms.hasNext && scheduled.size < window) {
+          val rowBlock = new RowBlock(scanners, scratch, n, tileSize, rowFroms.next())
+          pool.execute(rowBlock)
+          scheduled.add(rowBlock)
+        }
+        val rowBlock = scheduled.poll()
+        rowBlock.join()
+        rows(rowBlock.pairs)
+      }
+    } finally {
+      while (!scheduled.isEmpty) {
+        scheduled.poll().cancel(true)
+      }
+    }
+  }
+
+  //Pairs (i, j), i > j, accepted by the measure, ordered by i and then j
+  def run(measure: PairMeasure, tileSize: Int = defaultTileSize): PairBuffer = {
+    val retVal = new PairBuffer()
+    foreachRowBlock(measure, tileSize)(retVal.addAll(_))
+    retVal
+  }
+
+}
@@ -0,0 +1,96 @@
+package si.zitnik.research.sna.software.network
+
+import collection.mutable.ArrayBuffer
+import java.io.{File, FileInputStream, FileOutputStream}
+import java.nio.ByteBuffer
+import java.nio.charset.Charset
+import si.zitnik.research.sna.software.util.{AsyncOutputFile, AsyncOutput}
+
+//Writes the networks of all thresholds of one measure as one file: the edges of the lowest threshold with their scores,
+//after an index of the number of edges reaching each threshold. Edges are ordered by band, from the highest threshold
+//down, and within a band as they arrive, so the network of a threshold is the first lines of the file, see
+//DatasetReader.readScored. Every band is spilled into a file of its own next to filename and the bands are joined on close.
+//The file is not sorted by score within a band: slicing a threshold only needs the edges grouped by the thresholds they
+//reach, which the bands give without holding or sorting the edges of the network.
+//Thresholds are (label, value), an edge reaches a threshold when its score is at least value - tolerance.
+class ScoredNetworkSink(filename: String, thresholds: Seq[(String, Double)], tolerance: Double = 0) extends EdgeSink {
+  //band b holds the scores reaching bounds(b) but not bounds(b - 1), the last band those below all thresholds
+  private val bounds = thresholds.map(_._2 - tolerance).distinct.sorted.reverse.toArray
+  private val bandCounts = new Array[Int](bounds.length + 1)
+  private var bands: Array[AsyncOutputFile] = null
+  private var classNames: Array[String] = null
+  private var edgeCounts: Seq[(String, Int)] = null
+
+  private def bandFile(band: Int) = "%s.band%d".format(filename, band)
+
+  def open(classNames: Array[String]) {
+    this.classNames = classNames
+    java.util.Arrays.fill(bandCounts, 0)
+    bands = Array.tabulate(bandCounts.length)(band => AsyncOutput.open(bandFile(band)))
+  }
+
+  def edge(source: Int, target: Int, score: Double) {
+    var band = 0
+    while (band < bounds.length && score < bounds(band)) {
+      band += 1
+    }
+    bandCounts(band) += 1
+    val bw = bands(band)
+    bw.write(classNames(source)); bw.write(' ')
+    bw.write(classNames(target)); bw.write(' ')
+    bw.write(ScoredNetworkSink.formatScore(score)); bw.newLine()
+  }
+
+  def close() {
+    try {
+      val failures = bands.flatMap(bw => try { bw.close(); None } catch { case e: Throwable => Some(e) })
+      if (failures.nonEmpty) {
+        throw failures.head
+      }
+
+      edgeCounts = thresholds.map({ case (label, value) => (label, (0 to bounds.indexOf(value - tolerance)).map(bandCounts(_)).sum) })
+      val index = new StringBuilder()
+      edgeCounts.foreach({ case (label, count) => index.append("%s %s %d".format(ScoredNetworkSink.thresholdPrefix, label, count)).append(AsyncOutput.lineSeparator) })
+      index.append(ScoredNetworkSink.headerLine).append(AsyncOutput.lineSeparator)
+
+      val out = new FileOutputStream(filename).getChannel
+      try {
+        out.write(ByteBuffer.wrap(index.toString.getBytes(Charset.defaultCharset())))
+        for (band <- 0 until bands.length) {
+          val in = new FileInputStream(bandFile(band)).getChannel
+          try {
+            var position = 0L
+            while (position < in.size) {
+              position += in.transferTo(position, in.size - position, out)
+            }
+          } finally {
+            in.close()
+          }
+        }
+      } finally {
+        out.close()
+      }
+    } finally {
+      (0 until bands.length).foreach(band => new File(bandFile(band)).delete())
+    }
+  }
+
+  //(label, number of edges) of every threshold, once closed
+  def counts = edgeCounts
+
+}
+
+object ScoredNetworkSink {
+  val thresholdPrefix = "#THRESHOLD"
+  val headerLine = "#CANONICAL_CLASS_NAME CANONICAL_CLASS_NAME SCORE"
+
+  //shortest text that reads back to the same score, whole scores without a fraction
+  def formatScore(score: Double) = if (score == math.rint(score) && math.abs(score) < 1e15) score.toLong.toString else score.toString
+}
+
+//Edges of a scored network file by band, the first count of a threshold reach it
+class ScoredNetwork(val thresholds: Seq[(String, Int)], val edges: ArrayBuffer[(String, String, Double)]) {
+
+  def slice(label: String) = edges.take(thresholds.find(_._1 == label).get._2)
+
+}
@@ -0,0 +1,119 @@
+package si.zitnik.research.sna.software.network
+
+import si.zitnik.research.sna.software.model.CommentCorpus
+
+/**
+ * All measures of a sweep at once. Every pair sharing a word that reaches the lowest threshold of any measure is added
+ * twice in a row, scored by its number of shared words and by its TF-IDF cosine, see SweepRouter.
+ *
+ * Only the rows of rescored documents are scored against all documents. A row of another document is scored against
+ * the rescored documents only, so pairs of two documents that are not rescored are left out.
+ */
+class SweepMeasure(corpus: CommentCorpus, minMatches: Int, minJaccard: Double, minCosine: Double, rescored: Array[Boolean]) extends PairMeasure {
+
+  private val index = new InvertedIndex(corpus)
+  private lazy val rescoredIndex = new InvertedIndex(corpus, rescored(_))
+  private val matrix = new TFIDFMatrix(corpus)
+
+  def size = corpus.size
+
+  def newScanner() = new PairScanner {
+    private val overlaps = new Array[Int](size)
+    private val touched = new Array[Int](size)
+
+    def scan(i: Int, jFrom: Int, jUntil: Int, pairs: PairBuffer) {
+      if (!corpus.isEmpty(i)) {
+        val touchedCount = (if (rescored(i)) index else rescoredIndex).countOverlaps(i, jFrom, jUntil, overlaps, touched)
+        java.util.Arrays.sort(touched, 0, touchedCount)
+        for (k <- 0 until touchedCount) {
+          val j = touched(k)
+          add(i, j, overlaps(j - jFrom), pairs)
+          overlaps(j - jFrom) = 0
+        }
+      }
+    }
+  }
+
+  private def add(i: Int, j: Int, overlap: Int, pairs: PairBuffer) {
+    val cosine = matrix.dot(i, j)
+    if (overlap >= minMatches || SweepMeasure.jaccard(corpus, i, j, overlap) >= minJaccard || (cosine != 0 && cosine >= minCosine - TFIDFMatrix.Tolerance)) {
+      pairs.add(i, j, overlap)
+      pairs.add(i, j, cosine)
+    }
+  }
+
+}
+
+object SweepMeasure {
+
+  //measure for the buckets of sinks, a measure without buckets is never reached
+  def apply(corpus: CommentCorpus, sinks: SweepSinks, rescored: Array[Boolean]) = {
+    new SweepMeasure(corpus,
+      if (sinks.bow.isEmpty) Int.MaxValue else sinks.bow.map(_._1).min,
+      if (sinks.bowJaccard.isEmpty) Double.PositiveInfinity else sinks.bowJaccard.map(_._1).min,
+      if (sinks.tfidfCosine.isEmpty) Double.PositiveInfinity else sinks.tfidfCosine.map(_._1).min,
+      rescored)
+  }
+
+  def jaccard(corpus: CommentCorpus, i: Int, j: Int, overlap: Int) = {
+    overlap * 1.0 / (corpus.documentTerms(i).length + corpus.documentTerms(j).length - overlap)
+  }
+
+}
+
+/**
+ * Pushes the pairs of the row blocks of a sweep measure to the sinks of every bucket they reach. The kept edges of each
+ * measure, previous edges of pairs that were not scored again, ordered by pair, are merged in by pair, so every sink
+ * gets its edges in the order of a full sweep; call finish after the last row block for the kept edges after it.
+ * The shared words of a scored pair only count when words(i) or words(j), otherwise its BOW and BOWJaccard edges are kept.
+ */
+class SweepRouter(corpus: CommentCorpus, sinks: SweepSinks, words: Array[Boolean], keptBOW: PairBuffer, keptJaccard: PairBuffer, keptCosine: PairBuffer) {
+
+  private class Measure(buckets: Seq[(Double, EdgeSink)], tolerance: Double, kept: PairBuffer) {
+    private var next = 0
+
+    def edge(i: Int, j: Int, score: Double) {
+      keptBefore(i, j)
+      push(i, j, score)
+    }
+
+    def keptBefore(i: Int, j: Int) {
+      while (next < kept.size && (kept.first(next) < i || (kept.first(next) == i && kept.second(next) < j))) {
+        push(kept.first(next), kept.second(next), kept.score(next))
+        next += 1
+      }
+    }
+
+    private def push(i: Int, j: Int, score: Double) {
+      buckets.foreach(bucket => if (score >= bucket._1 - tolerance) bucket._2.edge(i, j, score))
+    }
+  }
+
+  private val bow = new Measure(sinks.bow.map(bucket => (bucket._1.toDouble, bucket._2)), 0, keptBOW)
+  private val bowJaccard = new Measure(sinks.bowJaccard, 0, keptJaccard)
+  private val tfidfCosine = new Measure(sinks.tfidfCosine, TFIDFMatrix.Tolerance, keptCosine)
+
+  def route(pairs: PairBuffer) {
+    var k = 0
+    while (k < pairs.size) {
+      val i = pairs.first(k)
+      val j = pairs.second(k)
+      val overlap = pairs.score(k).toInt
+      val cosine = pairs.score(k + 1)
+
+      if (words(i) || words(j)) {
+        bow.edge(i, j, overlap)
+        bowJaccard.edge(i, j, SweepMeasure.jaccard(corpus, i, j, overlap))
+      }
+      if (cosine != 0) {
+        tfidfCosine.edge(i, j, cosine)
+      }
+      k += 2
+    }
+  }
+
+  def finish() {
+    Seq(bow, bowJaccard, tfidfCosine).foreach(_.keptBefore(Int.MaxValue, 0))
+  }
+
+}
@@ -0,0 +1,140 @@
+package si.zitnik.research.sna.software.network
+
+import si.zitnik.research.sna.software.model.CommentCorpus
+
+//L2-normalized TF-IDF document vectors packed into a CSR matrix, cosine of two documents is the dot product of their rows
+class TFIDFMatrix(corpus: CommentCorpus) {
+  val size = corpus.size
+
+  //CSR: row i holds columns(rowOffsets(i) until rowOffsets(i + 1)) in ascending term order, zero weights are left out
+  val (rowOffsets, columns, values) = {
+    val rowOffsets = new Array[Int](size + 1)
+    val columns = new Array[Int](corpus.documentTerms.map(_.length).sum)
+    val values = new Array[Double](columns.length)
+
+    var nonZeros = 0
+    for (doc <- 0 until size) {
+      val terms = corpus.documentTerms(doc)
+      val counts = corpus.termFrequencies(doc)
+      val maxWordCountInDoc = if (counts.isEmpty) 1 else counts.max
+
+      val weights = (0 until terms.length).map(k => {
+        val tf = counts(k) * 1.0 / maxWordCountInDoc
+        val idf = math.log(size * 1.0 / corpus.documentFrequencies(terms(k)))
+        tf * idf
+      })
+      val norm = math.sqrt(weights.map(w => w * w).sum)
+
+      for (k <- 0 until terms.length if weights(k) != 0) {
+        columns(nonZeros) = terms(k)
+        values(nonZeros) = weights(k) / norm
+        nonZeros += 1
+      }
+      rowOffsets(doc + 1) = nonZeros
+    }
+
+    (rowOffsets, java.util.Arrays.copyOf(columns, nonZeros), java.util.Arrays.copyOf(values, nonZeros))
+  }
+
+  //CSC copy of the same matrix, rows of every column ascending
+  private val (columnOffsets, columnRows, columnValues) = {
+    val columnOffsets = new Array[Int](corpus.termCount + 1)
+    columns.foreach(term => columnOffsets(term + 1) += 1)
+    for (term <- 0 until corpus.termCount) {
+      columnOffsets(term + 1) += columnOffsets(term)
+    }
+
+    val columnRows = new Array[Int](columns.length)
+    val columnValues = new Array[Double](columns.length)
+    val filled = columnOffsets.clone()
+    for {
+      doc <- 0 until size
+      k <- rowOffsets(doc) until rowOffsets(doc + 1)
+    } {
+      val term = columns(k)
+      columnRows(filled(term)) = doc
+      columnValues(filled(term)) = values(k)
+      filled(term) += 1
+    }
+
+    (columnOffsets, columnRows, columnValues)
+  }
+
+  //cosine similarity of documents i and j
+  def dot(i: Int, j: Int) = {
+    var retVal = 0.0
+    var a = rowOffsets(i)
+    var b = rowOffsets(j)
+    while (a < rowOffsets(i + 1) && b < rowOffsets(j + 1)) {
+      if (columns(a) < columns(b)) {
+        a += 1
+      } else if (columns(a) > columns(b)) {
+        b += 1
+      } else {
+        retVal += values(a) * values(b)
+        a += 1
+        b += 1
+      }
+    }
+    retVal
+  }
+
+  /**
+   * Lower triangle of X * X^T: pairs (i, j), i > j, with non-zero cosine >= scoreThreshold, ordered by i and then j.
+   * Every tile of the product reuses one dense accumulator row of its worker thread.
+   */
+  def join(scoreThreshold: Double): PairBuffer = PairEngine.run(measure(scoreThreshold))
+
+  //join as a measure of the pair engine
+  def measure(scoreThreshold: Double): PairMeasure = new PairMeasure {
+    def size = TFIDFMatrix.this.size
+
+    def newScanner() = new PairScanner {
+      //indexed by j - jFrom
+      private val accumulator = new Array[Double](size)
+      private val marked = new Array[Boolean](size)
+      private val touched = new Array[Int](size)
+
+      def scan(i: Int, jFrom: Int, jUntil: Int, pairs: PairBuffer) {
+        var touchedCount = 0
+
+        var k = rowOffsets(i)
+        while (k < rowOffsets(i + 1)) {
+          val term = columns(k)
+          val weight = values(k)
+          var e = InvertedIndex.lowerBound(columnRows, columnOffsets(term), columnOffsets(term + 1), jFrom)
+          while (e < columnOffsets(term + 1) && columnRows(e) < jUntil) {
+            val j = columnRows(e)
+            if (!marked(j - jFrom)) {
+              marked(j - jFrom) = true
+              touched(touchedCount) = j
+              touchedCount += 1
+            }
+            accumulator(j - jFrom) += weight * columnValues(e)
+            e += 1
+          }
+          k += 1
+        }
+
+        java.util.Arrays.sort(touched, 0, touchedCount)
+        var t = 0
+        while (t < touchedCount) {
+          val j = touched(t)
+          val cosine = accumulator(j - jFrom)
+          accumulator(j - jFrom) = 0
+          marked(j - jFrom) = false
+          if (cosine != 0 && cosine >= scoreThreshold - TFIDFMatrix.Tolerance) {
+            pairs.add(i, j, cosine)
+          }
+          t += 1
+        }
+      }
+    }
+  }
+
+}
+
+object TFIDFMatrix {
+  //cosines are sums of rounded products (identical documents may score 0.9999999999999998), scores this close to a threshold reach it
+  val Tolerance = 1e-12
+}
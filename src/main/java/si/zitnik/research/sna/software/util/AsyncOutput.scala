@@ -0,0 +1,177 @@
+package si.zitnik.research.sna.software.util
+
+import java.io.{IOException, OutputStream, FileOutputStream}
+import java.nio.{CharBuffer, ByteBuffer}
+import java.nio.channels.{Channels, FileChannel}
+import java.nio.charset.{CodingErrorAction, Charset}
+import java.util.concurrent.{LinkedBlockingQueue, CountDownLatch, ArrayBlockingQueue}
+import java.util.zip.GZIPOutputStream
+
+//Text file written by the thread of AsyncOutput: writes are encoded into chunks on the calling thread and the full chunks
+//are handed over, so the caller only waits when the queue of the output thread is full, and in close.
+//Encodes as FileWriter does, by default in the default charset; a filename ending in .gz is written as a gzip stream.
+class AsyncOutputFile private[util](val filename: String, charset: Charset) {
+  private val encoder = charset.newEncoder()
+    .onMalformedInput(CodingErrorAction.REPLACE)
+    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+  private val chars = CharBuffer.allocate(8192)
+  private var chunk: ByteBuffer = null
+
+  //opened here, so a file that cannot be written fails in AsyncOutput.open; only written and closed by the output thread
+  private[util] val channel: FileChannel = new FileOutputStream(filename).getChannel
+  private[util] val stream: OutputStream = if (!filename.endsWith(".gz")) null else {
+    try {
+      new GZIPOutputStream(Channels.newOutputStream(channel), 1 << 16)
+    } catch {
+      case e: Throwable => {
+        channel.close()
+        throw e
+      }
+    }
+  }
+  @volatile private[util] var failure: Throwable = null
+  private[util] val closed = new CountDownLatch(1)
+
+  def write(text: String) {
+    var k = 0
+    while (k < text.length) {
+      val length = math.min(chars.remaining(), text.length - k)
+      text.getChars(k, k + length, chars.array(), chars.position())
+      chars.position(chars.position() + length)
+      k += length
+      if (!chars.hasRemaining) {
+        encode(false)
+      }
+    }
+  }
+
+  def write(c: Char) {
+    chars.put(c)
+    if (!chars.hasRemaining) {
+      encode(false)
+    }
+  }
+
+  def newLine() {
+    write(AsyncOutput.lineSeparator)
+  }
+
+  private def encode(endOfInput: Boolean) {
+    chars.flip()
+    if (chunk == null) {
+      chunk = AsyncOutput.acquire()
+    }
+    while (encoder.encode(chars, chunk, endOfInput).isOverflow) {
+      submit()
+    }
+    if (endOfInput) {
+      while (encoder.flush(chunk).isOverflow) {
+        submit()
+      }
+    }
+    //a high surrogate at the end waits for its low surrogate
+    chars.compact()
+  }
+
+  private def submit() {
+    if (failure != null) {
+      throw new IOException("Writing " + filename + " failed", failure)
+    }
+    AsyncOutput.submit(this, chunk, false)
+    chunk = AsyncOutput.acquire()
+  }
+
+  //Waits until the file is written, rethrows a failure of the output thread
+  def close() {
+    encode(true)
+    AsyncOutput.submit(this, chunk, true)
+    chunk = null
+    closed.await()
+    if (failure != null) {
+      throw new IOException("Writing " + filename + " failed", failure)
+    }
+  }
+
+}
+
+//Output stage shared by all AsyncOutputFiles: one daemon thread writes the chunks in the order they were submitted,
+//through FileChannels from direct buffers, which are recycled once written
+object AsyncOutput {
+  val chunkSize = 1 << 18
+  val queueCapacity = 32
+  val lineSeparator = System.getProperty("line.separator")
+
+  private class Chunk(val file: AsyncOutputFile, val bytes: ByteBuffer, val last: Boolean)
+
+  private val queue = new ArrayBlockingQueue[Chunk](queueCapacity)
+  private val free = new LinkedBlockingQueue[ByteBuffer]()
+
+  val counter = new StageCounter("output")
+
+  private lazy val thread = {
+    val retVal = new Thread(new Runnable {
+      def run() {
+        val copy = new Array[Byte](chunkSize)
+        while (true) {
+          val chunk = queue.take()
+          counter.time(write(chunk, copy))
+          counter.count()
+        }
+      }
+    }, "AsyncOutput")
+    retVal.setDaemon(true)
+    retVal.start()
+    retVal
+  }
+
+  private def write(chunk: Chunk, copy: Array[Byte]) {
+    val file = chunk.file
+    val bytes = chunk.bytes
+    bytes.flip()
+    try {
+      if (file.failure == null) {
+        if (file.stream != null) {
+          val length = bytes.remaining()
+          bytes.get(copy, 0, length)
+          file.stream.write(copy, 0, length)
+        } else {
+          while (bytes.hasRemaining) {
+            file.channel.write(bytes)
+          }
+        }
+      }
+    } catch {
+      case e: Throwable => file.failure = e
+    } finally {
+      bytes.clear()
+      free.put(bytes)
+    }
+
+    if (chunk.last) {
+      try {
+        if (file.stream != null) {
+          file.stream.close()
+        } else {
+          file.channel.close()
+        }
+      } catch {
+        case e: Throwable => if (file.failure == null) file.failure = e
+      } finally {
+        file.closed.countDown()
+      }
+    }
+  }
+
+  def open(filename: String, charset: Charset = Charset.defaultCharset()) = new AsyncOutputFile(filename, charset)
+
+  private[util] def acquire(): ByteBuffer = {
+    val retVal = free.poll()
+    if (retVal != null) retVal else ByteBuffer.allocateDirect(chunkSize)
+  }
+
+  private[util] def submit(file: AsyncOutputFile, bytes: ByteBuffer, last: Boolean) {
+    thread
+    queue.put(new Chunk(file, bytes, last))
+  }
+
+}
@@ -0,0 +1,216 @@
+package si.zitnik.research.sna.software.util
+
+import si.zitnik.research.sna.software.enum.{NetworkOutputMode, SourceLocations}
+import java.io.{FileNotFoundException, File}
+import io.Source
+import collection.mutable
+import collection.mutable.ArrayBuffer
+
+//Author rules of a project, compiled from rules/default.rules and rules/<project>.rules (see default.rules for the syntax).
+//The author of a file follows a marker: the first line with a marker followed by whitespace and a name gives the name after
+//its last such marker. Fallback markers count only when the markers give no author or UNKNOWN.
+//outputMode is how the author network of the project is written.
+class AuthorRules(markers: Seq[String], fallbackMarkers: Seq[String], appends: Map[String, Seq[String]], aliases: Map[String, String], classAuthors: Map[String, String], val outputMode: NetworkOutputMode.Value = NetworkOutputMode.EDGES) {
+  private val automaton = new MarkerAutomaton((markers ++ fallbackMarkers).toIndexedSeq)
+  private val markerCount = markers.size
+
+  //differs when the markers differ, records extracted with other markers are stale
+  val markerHash = {
+    var hash = 0xcbf29ce484222325L
+    (markers ++ Seq("") ++ fallbackMarkers).foreach(marker => (marker + "\n").foreach(c => hash = (hash ^ c) * 0x100000001b3L))
+    hash
+  }
+
+  //Name after a marker in one pass over the source, UNKNOWN when there is none.
+  //Equal to the former regex .*(markers)\s+([:<=">/a-zA-Z @.0-9]+).* of findFirstIn, and its fallback.
+  def extractAuthor(source: CharSequence): String = {
+    val length = source.length()
+    //per tier: line end of the first line with a marker, and start and id of its last marker
+    val lineEnds = Array(-1, -1)
+    val starts = Array(-1, -1)
+    val ids = Array(-1, -1)
+
+    var state = automaton.initialState
+    var p = 0
+    while (p < length && (starts(0) < 0 || p < lineEnds(0))) {
+      state = automaton.next(state, source.charAt(p))
+      p += 1
+
+      val found = automaton.matches(state)
+      var k = 0
+      while (k < found.length) {
+        val id = found(k)
+        val tier = if (id < markerCount) 0 else 1
+        val start = p - automaton.markers(id).length
+        val inLine = starts(tier) < 0 || start < lineEnds(tier)
+        //at one position the marker listed first wins, as in an alternation
+        val better = start > starts(tier) || (start == starts(tier) && id < ids(tier))
+        if (inLine && better && nameStart(source, p) >= 0) {
+          if (starts(tier) < 0) {
+            lineEnds(tier) = AuthorRules.lineEnd(source, start)
+          }
+          starts(tier) = start
+          ids(tier) = id
+        }
+        k += 1
+      }
+    }
+
+    val author = if (starts(0) < 0) AuthorRules.Unknown else name(source, starts(0) + automaton.markers(ids(0)).length)
+    if (author == AuthorRules.Unknown && starts(1) >= 0) {
+      name(source, starts(1) + automaton.markers(ids(1)).length)
+    } else {
+      author
+    }
+  }
+
+  //start of the name after a marker ending at p, -1 if none follows
+  private def nameStart(source: CharSequence, p: Int): Int = {
+    var end = p
+    while (end < source.length() && AuthorRules.isRegexSpace(source.charAt(end))) {
+      end += 1
+    }
+    if (end == p) {
+      -1
+    } else if (end < source.length() && AuthorRules.isNameChar(source.charAt(end))) {
+      end
+    } else {
+      //backtracking gives the last space of the whitespace back to the name, which is then that space
+      var space = end - 1
+      while (space > p && source.charAt(space) != ' ') {
+        space -= 1
+      }
+      if (space > p) space else -1
+    }
+  }
+
+  //the name after a marker ending at p, a name found by backtracking is the only one starting with a space
+  private def name(source: CharSequence, p: Int) = {
+    val start = nameStart(source, p)
+    var end = start + 1
+    if (source.charAt(start) != ' ') {
+      while (end < source.length() && AuthorRules.isNameChar(source.charAt(end))) {
+        end += 1
+      }
+    }
+    source.subSequence(start, end).toString
+  }
+
+  //author of a class: the extracted author with the appends of the class, then its alias, then the author set for the class
+  def resolve(className: String, author: String): String = {
+    var retVal = author
+    appends.get(className).foreach(_.foreach(suffix => retVal += suffix))
+    retVal = aliases.getOrElse(retVal, retVal)
+    classAuthors.getOrElse(className, retVal)
+  }
+
+}
+
+object AuthorRules {
+  val Unknown = "UNKNOWN"
+
+  val rulesLocation = "rules"
+
+  //rules of no project in particular
+  lazy val defaults = load(Seq(defaultRules))
+
+  def apply(dataset: SourceLocations.Value): AuthorRules = {
+    val dsName = dataset.toString.replaceFirst(SourceLocations.location, "").replaceAll("/.*", "")
+    load(Seq(new File(rulesLocation, dsName + ".rules"), defaultRules))
+  }
+
+  //rules/ is resolved against the working directory, as SourceLocations is; without default.rules every author would be
+  //UNKNOWN and every cache stale, so a run from elsewhere fails here
+  private def defaultRules = {
+    val retVal = new File(rulesLocation, "default.rules")
+    if (!retVal.isFile) {
+      throw new FileNotFoundException("No author rules at %s, run from the project directory".format(retVal.getAbsolutePath))
+    }
+    retVal
+  }
+
+  //rules of the existing files, earlier files first
+  def load(files: Seq[File]): AuthorRules = {
+    val markers = ArrayBuffer[String]()
+    val fallbackMarkers = ArrayBuffer[String]()
+    val appends = mutable.LinkedHashMap[String, Seq[String]]()
+    val aliases = mutable.HashMap[String, String]()
+    val classAuthors = mutable.HashMap[String, String]()
+    var outputMode: Option[NetworkOutputMode.Value] = None
+
+    files.filter(_.isFile).foreach(file => {
+      val source = Source.fromFile(file, "utf-8")
+      try {
+        source.getLines().zipWithIndex.foreach({ case (line, lineNumber) => {
+          val trimmed = line.trim
+          if (!trimmed.isEmpty && !trimmed.startsWith("#")) {
+            val kind = trimmed.takeWhile(!Character.isWhitespace(_))
+            val args = quoted(trimmed.substring(kind.length), "%s:%d".format(file, lineNumber + 1))
+            (kind, args) match {
+              case ("marker", Seq(marker)) => markers += marker
+              case ("fallback", Seq(marker)) => fallbackMarkers += marker
+              case ("append", Seq(className, suffix)) => appends(className) = appends.getOrElse(className, Seq()) :+ suffix
+              //rules of earlier files win
+              case ("alias", Seq(author, alias)) => if (!aliases.contains(author)) aliases(author) = alias
+              case ("class", Seq(className, author)) => if (!classAuthors.contains(className)) classAuthors(className) = author
+              case ("output", Seq(mode)) => if (outputMode.isEmpty) outputMode = Some(NetworkOutputMode.values.find(_.toString == mode).getOrElse(
+                throw new IllegalArgumentException("%s:%d: unknown output mode %s".format(file, lineNumber + 1, mode))))
+              case _ => throw new IllegalArgumentException("%s:%d: unknown rule %s".format(file, lineNumber + 1, trimmed))
+            }
+          }
+        }})
+      } finally {
+        source.close()
+      }
+    })
+
+    new AuthorRules(markers, fallbackMarkers, appends.toMap, aliases.toMap, classAuthors.toMap, outputMode.getOrElse(NetworkOutputMode.EDGES))
+  }
+
+  //"..." arguments, \" and \\ escape a quote and a backslash
+  private def quoted(text: String, position: String): Seq[String] = {
+    val retVal = ArrayBuffer[String]()
+    var p = 0
+    while (p < text.length) {
+      if (Character.isWhitespace(text.charAt(p))) {
+        p += 1
+      } else if (text.charAt(p) == '"') {
+        val value = new StringBuilder()
+        p += 1
+        while (p < text.length && text.charAt(p) != '"') {
+          if (text.charAt(p) == '\\' && p + 1 < text.length) {
+            p += 1
+          }
+          value += text.charAt(p)
+          p += 1
+        }
+        if (p == text.length) {
+          throw new IllegalArgumentException("%s: unterminated argument".format(position))
+        }
+        retVal += value.toString
+        p += 1
+      } else {
+        throw new IllegalArgumentException("%s: arguments must be quoted".format(position))
+      }
+    }
+    retVal
+  }
+
+  //\s of java.util.regex
+  private def isRegexSpace(c: Char) = c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r'
+
+  //[:<=">/a-zA-Z @.0-9]
+  private def isNameChar(c: Char) = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || ":<=\">/ @.".indexOf(c) >= 0
+
+  //. of java.util.regex does not match line terminators
+  private def isLineTerminator(c: Char) = c == '\n' || c == '\r' || c == 0x85 || c == 0x2028 || c == 0x2029
+
+  private def lineEnd(source: CharSequence, p: Int) = {
+    var end = p
+    while (end < source.length() && !isLineTerminator(source.charAt(end))) {
+      end += 1
+    }
+    end
+  }
+
+}
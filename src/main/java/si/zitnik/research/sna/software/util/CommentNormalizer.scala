@@ -0,0 +1,229 @@
+package si.zitnik.research.sna.software.util
+
+import java.util.Locale
+
+//Comment processing of SoftwareFileUtil without regular expressions, in one reusable buffer.
+//Every step is an in-place pass in the order of the former replaceAll chain, as a removal may create a match of a later step.
+class CommentNormalizer {
+  private var chars = new Array[Char](256)
+  private var length = 0
+
+  //Normalizes source(start until end), false when the comment is ignored
+  def normalize(source: CharSequence, start: Int, end: Int): Boolean = {
+    lowerCaseWithoutStars(source, start, end)
+    removeTag("@param ", false)
+    removeTag("@return ", false)
+    removeTag("@since ", true)
+    cutAtMarker()
+    removeLiteral("--- end license block ---")
+    removeLiteral("--- begin license block ---")
+    collapseWhitespace()
+    trim()
+
+    !CommentNormalizer.ignoredPrefixes.exists(startsWith(_))
+  }
+
+  def normalize(comment: String): Boolean = normalize(comment, 0, comment.length)
+
+  def appendTo(out: java.lang.StringBuilder) {
+    out.append(chars, 0, length)
+  }
+
+  override def toString = new String(chars, 0, length)
+
+  //toLowerCase and replaceAll("\\*", "")
+  private def lowerCaseWithoutStars(source: CharSequence, start: Int, end: Int) {
+    if (chars.length < end - start) {
+      chars = new Array[Char](math.max(end - start, 2 * chars.length))
+    }
+    length = 0
+
+    var p = start
+    while (p < end && CommentNormalizer.latin1LowerCase && source.charAt(p) < 0x100) {
+      val c = source.charAt(p)
+      if (c != '*') {
+        chars(length) = Character.toLowerCase(c)
+        length += 1
+      }
+      p += 1
+    }
+
+    //characters beyond latin1 may change length or depend on the locale
+    if (p < end) {
+      val lowerCase = source.subSequence(start, end).toString.toLowerCase
+      if (chars.length < lowerCase.length) {
+        chars = new Array[Char](lowerCase.length)
+      }
+      length = 0
+      for (k <- 0 until lowerCase.length if lowerCase.charAt(k) != '*') {
+        chars(length) = lowerCase.charAt(k)
+        length += 1
+      }
+    }
+  }
+
+  private def matchesAt(p: Int, literal: String): Boolean = {
+    if (p + literal.length > length) {
+      return false
+    }
+    var k = 0
+    while (k < literal.length) {
+      if (chars(p + k) != literal.charAt(k)) {
+        return false
+      }
+      k += 1
+    }
+    true
+  }
+
+  private def startsWith(prefix: String) = matchesAt(0, prefix)
+
+  //replaceAll(tag + "[a-zA-Z]*", ""), or [a-zA-Z\\.0-9] with version
+  private def removeTag(tag: String, version: Boolean) {
+    var w = 0
+    var r = 0
+    while (r < length) {
+      if (chars(r) == '@' && matchesAt(r, tag)) {
+        r += tag.length
+        while (r < length && (CommentNormalizer.isAsciiLetter(chars(r)) || (version && (chars(r) == '.' || (chars(r) >= '0' && chars(r) <= '9'))))) {
+          r += 1
+        }
+      } else {
+        chars(w) = chars(r)
+        w += 1
+        r += 1
+      }
+    }
+    length = w
+  }
+
+  //replaceAll("(?s)\\s*(@author|author|user|created|@created).*$", "")
+  private def cutAtMarker() {
+    var p = 0
+    while (p < length && !CommentNormalizer.markers.exists(matchesAt(p, _))) {
+      p += 1
+    }
+    if (p < length) {
+      while (p > 0 && CommentNormalizer.isRegexSpace(chars(p - 1))) {
+        p -= 1
+      }
+      length = p
+    }
+  }
+
+  //replaceAll(literal, "")
+  private def removeLiteral(literal: String) {
+    var w = 0
+    var r = 0
+    while (r < length) {
+      if (matchesAt(r, literal)) {
+        r += literal.length
+      } else {
+        chars(w) = chars(r)
+        w += 1
+        r += 1
+      }
+    }
+    length = w
+  }
+
+  //replaceAll("\\s+", " ")
+  private def collapseWhitespace() {
+    var w = 0
+    var r = 0
+    while (r < length) {
+      if (CommentNormalizer.isRegexSpace(chars(r))) {
+        while (r < length && CommentNormalizer.isRegexSpace(chars(r))) {
+          r += 1
+        }
+        chars(w) = ' '
+      } else {
+        chars(w) = chars(r)
+        r += 1
+      }
+      w += 1
+    }
+    length = w
+  }
+
+  //String.trim
+  private def trim() {
+    var from = 0
+    while (from < length && chars(from) <= ' ') {
+      from += 1
+    }
+    while (length > from && chars(length - 1) <= ' ') {
+      length -= 1
+    }
+    if (from > 0) {
+      System.arraycopy(chars, from, chars, 0, length - from)
+      length -= from
+    }
+  }
+
+}
+
+object CommentNormalizer {
+  //processed comments starting with these are dropped
+  val ignoredPrefixes = Seq(
+    "user:",
+    "author",
+    "@author",
+    "created",
+    "@created",
+    "copyright",
+    "java port of bullet",
+    "jblas - light-weight wrapper for atlas and lapack (http://www.jblas.org) copyright",
+    "licensed to the apache software foundation",
+    "=========================================================================== (c) copyright",
+    "do not alter or remove copyright notices or this file header",
+    "(c) copyright",
+    "portions copyright",
+    "licensed materials",
+    "this file is available under and governed by the gnu general public license")
+
+  //the rest of a comment is dropped from the first of these on
+  private val markers = Seq("@author", "author", "user", "created", "@created")
+
+  //Character.toLowerCase agrees with String.toLowerCase on latin1 except in locales with special casing rules
+  private val latin1LowerCase = !Set("tr", "az", "lt").contains(Locale.getDefault.getLanguage)
+
+  private def isAsciiLetter(c: Char) = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+
+  //\s of java.util.regex
+  private def isRegexSpace(c: Char) = c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r'
+
+  //. of java.util.regex does not match line terminators
+  private def isLineTerminator(c: Char) = c == '\n' || c == '\r' || c == 0x85 || c == 0x2028 || c == 0x2029
+
+  //replaceAll("<.*?>", "")
+  def stripTags(text: CharSequence): String = {
+    val retVal = new java.lang.StringBuilder(text.length)
+    //no tag closes before this position, as a line terminator or the end comes first
+    var unclosedUntil = -1
+
+    var p = 0
+    while (p < text.length) {
+      val c = text.charAt(p)
+      if (c == '<' && p >= unclosedUntil) {
+        var q = p + 1
+        while (q < text.length && text.charAt(q) != '>' && !isLineTerminator(text.charAt(q))) {
+          q += 1
+        }
+        if (q < text.length && text.charAt(q) == '>') {
+          p = q + 1
+        } else {
+          unclosedUntil = q
+          retVal.append(c)
+          p += 1
+        }
+      } else {
+        retVal.append(c)
+        p += 1
+      }
+    }
+
+    retVal.toString
+  }
+
+}
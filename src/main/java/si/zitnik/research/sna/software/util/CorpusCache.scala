@@ -0,0 +1,195 @@
+package si.zitnik.research.sna.software.util
+
+import si.zitnik.research.sna.software.model.{ManifestEntry, SoftwareFile}
+import java.io.{File, DataOutputStream, BufferedOutputStream, FileOutputStream, RandomAccessFile}
+import java.nio.channels.FileChannel
+import java.nio.{BufferUnderflowException, ByteBuffer}
+import java.nio.file.{StandardCopyOption, Paths, Files}
+import java.nio.charset.Charset
+import collection.mutable
+import collection.mutable.ArrayBuffer
+import com.typesafe.scalalogging.slf4j.Logging
+
+//Records of a cache file with the manifest of the files they were extracted from, and the author markers they were extracted with
+class CachedCorpus(val extractorVersion: Int, val rulesHash: Long, val fingerprint: Long, val files: ArrayBuffer[SoftwareFile], val manifest: ArrayBuffer[ManifestEntry]) {
+
+}
+
+//Binary cache of the SoftwareFile records of a source tree, all of it is valid while the fingerprint of the tree does not change.
+//Layout: magic, format version, extractor version, author rules hash, fingerprint, record count, string table
+//(length-prefixed latin1 bytes), records as string table indices, each followed by its manifest entry.
+object CorpusCache extends Logging {
+  private val Magic = 0x534e4143 //SNAC
+  private val FormatVersion = 4
+  //set on lengths of strings stored as UTF-8 because they do not fit latin1
+  private val Utf8Flag = 0x80000000
+  //bytes up to and with the record count
+  private val HeaderSize = 32
+
+  private val latin1 = Charset.forName("latin1")
+  private val utf8 = Charset.forName("utf-8")
+
+  private val FnvOffset = 0xcbf29ce484222325L
+  private val FnvPrime = 0x100000001b3L
+
+  //FNV-1a over path, size and modification time of every source file
+  def fingerprint(manifest: Seq[ManifestEntry]): Long = {
+    var hash = FnvOffset
+    val update = (value: Long) => {
+      hash = (hash ^ value) * FnvPrime
+    }
+
+    manifest.foreach(entry => {
+      entry.path.foreach(c => update(c))
+      update(entry.size)
+      update(entry.lastModified)
+    })
+    hash
+  }
+
+  //FNV-1a over the bytes of a file
+  def contentHash(content: Array[Byte]): Long = contentHash(content, 0, content.length)
+
+  def contentHash(content: Array[Byte], offset: Int, length: Int): Long = {
+    var hash = FnvOffset
+    var k = offset
+    while (k < offset + length) {
+      hash = (hash ^ (content(k) & 0xff)) * FnvPrime
+      k += 1
+    }
+    hash
+  }
+
+  //Written to a temporary file next to cacheFile and moved over it, so an interrupted save leaves the previous cache
+  def save(cacheFile: String, corpus: CachedCorpus) {
+    val files = corpus.files
+    val strings = ArrayBuffer[String]()
+    val stringIds = mutable.HashMap[String, Int]()
+    val id = (string: String) => stringIds.getOrElseUpdate(string, {
+      strings += string
+      strings.size - 1
+    })
+
+    val records = files.map(file => {
+      (Seq(file.filename, file.packageName, file.className, file.author, file.comments).map(id(_)), file.imports.map(id(_)))
+    })
+    val paths = corpus.manifest.map(entry => id(entry.path))
+
+    new File(cacheFile).getAbsoluteFile.getParentFile.mkdirs()
+    val tempFile = cacheFile + ".tmp"
+    val out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16))
+    try {
+      out.writeInt(Magic)
+      out.writeInt(FormatVersion)
+      out.writeInt(corpus.extractorVersion)
+      out.writeLong(corpus.rulesHash)
+      out.writeLong(corpus.fingerprint)
+      out.writeInt(records.size)
+
+      out.writeInt(strings.size)
+      strings.foreach(string => {
+        if (string.forall(_ < 0x100)) {
+          out.writeInt(string.length)
+          out.write(string.getBytes(latin1))
+        } else {
+          val bytes = string.getBytes(utf8)
+          out.writeInt(bytes.length | Utf8Flag)
+          out.write(bytes)
+        }
+      })
+
+      for (k <- 0 until records.size) {
+        val (fields, imports) = records(k)
+        fields.foreach(out.writeInt(_))
+        out.writeInt(imports.size)
+        imports.foreach(out.writeInt(_))
+
+        val entry = corpus.manifest(k)
+        out.writeInt(paths(k))
+        out.writeLong(entry.size)
+        out.writeLong(entry.lastModified)
+        out.writeLong(entry.contentHash)
+      }
+    } finally {
+      out.close()
+    }
+    Files.move(Paths.get(tempFile), Paths.get(cacheFile), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)
+  }
+
+  //None when the cache file is missing, of another format or damaged
+  def load(cacheFile: String): Option[CachedCorpus] = {
+    if (!new File(cacheFile).isFile) {
+      return None
+    }
+
+    val file = new RandomAccessFile(cacheFile, "r")
+    try {
+      val buffer = file.getChannel.map(FileChannel.MapMode.READ_ONLY, 0, file.length())
+
+      if (buffer.remaining() < 8 || buffer.getInt() != Magic || buffer.getInt() != FormatVersion) {
+        None
+      } else {
+        val extractorVersion = buffer.getInt()
+        val rulesHash = buffer.getLong()
+        val fingerprint = buffer.getLong()
+        val retVal = readRecords(extractorVersion, rulesHash, fingerprint, buffer)
+        if (buffer.hasRemaining) {
+          throw new IllegalStateException("%d bytes after the records".format(buffer.remaining()))
+        }
+        Some(retVal)
+      }
+    } catch {
+      //e.g. a cache cut short, or written by a save that was killed before its files were moved
+      case e @ (_: BufferUnderflowException | _: IndexOutOfBoundsException | _: NegativeArraySizeException | _: IllegalStateException) => {
+        logger.warn("Ignoring damaged cache file %s: %s".format(cacheFile, e))
+        None
+      }
+    } finally {
+      file.close()
+    }
+  }
+
+  //number of records of a cache file, from its header only; None when the cache file is missing or of another format
+  def fileCount(cacheFile: String): Option[Int] = {
+    if (!new File(cacheFile).isFile) {
+      return None
+    }
+
+    val file = new RandomAccessFile(cacheFile, "r")
+    try {
+      if (file.length() < HeaderSize || file.readInt() != Magic || file.readInt() != FormatVersion) {
+        None
+      } else {
+        file.seek(HeaderSize - 4)
+        Some(file.readInt())
+      }
+    } finally {
+      file.close()
+    }
+  }
+
+  private def readRecords(extractorVersion: Int, rulesHash: Long, fingerprint: Long, buffer: ByteBuffer) = {
+    val count = buffer.getInt()
+    var bytes = new Array[Byte](1 << 12)
+    val strings = Array.fill(buffer.getInt())({
+      val header = buffer.getInt()
+      val length = header & ~Utf8Flag
+      if (bytes.length < length) {
+        bytes = new Array[Byte](math.max(length, 2 * bytes.length))
+      }
+      buffer.get(bytes, 0, length)
+      new String(bytes, 0, length, if ((header & Utf8Flag) != 0) utf8 else latin1)
+    })
+
+    val files = new ArrayBuffer[SoftwareFile](count)
+    val manifest = new ArrayBuffer[ManifestEntry](count)
+    for (k <- 0 until count) {
+      val fields = Array.fill(5)(strings(buffer.getInt()))
+      val imports = Array.fill(buffer.getInt())(strings(buffer.getInt()))
+      files += new SoftwareFile(fields(0), fields(1), fields(2), fields(3), fields(4), imports)
+      manifest += new ManifestEntry(strings(buffer.getInt()), buffer.getLong(), buffer.getLong(), buffer.getLong())
+    }
+    new CachedCorpus(extractorVersion, rulesHash, fingerprint, files, manifest)
+  }
+
+}
@@ -0,0 +1,135 @@
+package si.zitnik.research.sna.software.util
+
+import collection.mutable.ArrayBuffer
+import java.io.{FileInputStream, File}
+import java.util.zip.GZIPInputStream
+import io.{Codec, Source}
+import java.nio.charset.CodingErrorAction
+import si.zitnik.research.sna.software.enum.NetworkFormat
+import si.zitnik.research.sna.software.network.{ScoredNetworkSink, ScoredNetwork, BinaryNetwork}
+
+//Reads back files of DatasetWriter, in its (default) encoding
+object DatasetReader {
+  //files written under another default encoding still load, values that do not decode just differ from fresh ones
+  private val codec = Codec.default.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE)
+
+  //lines without the header line, None when there is no such file; a filename ending with .gz is read as a gzip stream
+  def readLines(filename: String): Option[ArrayBuffer[String]] = {
+    if (!new File(filename).isFile) {
+      None
+    } else {
+      val source = open(filename)
+      try {
+        Some(source.getLines().drop(1).to[ArrayBuffer])
+      } finally {
+        source.close()
+      }
+    }
+  }
+
+  //"A B" lines of a network file
+  def readEdges(filename: String): Option[ArrayBuffer[(String, String)]] = {
+    readLines(filename).map(_.map(line => {
+      val separator = line.indexOf(' ')
+      (line.substring(0, separator), line.substring(separator + 1))
+    }))
+  }
+
+  //edges of a network file of DatasetWriter.networkSink
+  def readNetwork(name: String, format: NetworkFormat.Value): Option[ArrayBuffer[(String, String)]] = {
+    val filename = DatasetWriter.networkFile(name, format)
+    if (format == NetworkFormat.TEXT) {
+      readEdges(filename)
+    } else if (!new File(filename).isFile) {
+      None
+    } else {
+      val network = new BinaryNetwork(filename)
+      val classNames = network.classNames
+      val retVal = ArrayBuffer[(String, String)]()
+      network.foreachEdge((source, target, weight) => retVal.append((classNames(source), classNames(target))))
+      Some(retVal)
+    }
+  }
+
+  //Calls f with the source and target class names and the score of every edge of a network file of DatasetWriter.networkSink
+  //or scoredNetworkSink while reading it, so the edges are never held; false when there is no such file.
+  //Scores are NaN where the file has none, binary networks give their weights as stored.
+  def foreachEdge(filename: String)(f: (String, String, Double) => Unit): Boolean = {
+    if (!new File(filename).isFile) {
+      false
+    } else if (filename.endsWith(".bin")) {
+      val network = new BinaryNetwork(filename)
+      val classNames = network.classNames
+      network.foreachEdge((source, target, weight) => f(classNames(source), classNames(target), weight))
+      true
+    } else {
+      val source = open(filename)
+      try {
+        //the header line and the threshold index of a scored network start with #, class names do not
+        source.getLines().filter(!_.startsWith("#")).foreach(line => {
+          val first = line.indexOf(' ')
+          val second = line.indexOf(' ', first + 1)
+          if (second < 0) {
+            f(line.substring(0, first), line.substring(first + 1), Double.NaN)
+          } else {
+            f(line.substring(0, first), line.substring(first + 1, second), line.substring(second + 1).toDouble)
+          }
+        })
+        true
+      } finally {
+        source.close()
+      }
+    }
+  }
+
+  //scored network file of ScoredNetworkSink, None when there is no such file
+  def readScored(filename: String): Option[ScoredNetwork] = readScored(filename, None)
+
+  //edges of the threshold labelled label of a scored network file, the rest of the file is not read
+  def readScored(filename: String, label: String): Option[ArrayBuffer[(String, String, Double)]] = readScored(filename, Some(label)).map(_.edges)
+
+  private def readScored(filename: String, label: Option[String]): Option[ScoredNetwork] = {
+    if (!new File(filename).isFile) {
+      None
+    } else {
+      val source = open(filename)
+      try {
+        val lines = source.getLines()
+        val thresholds = ArrayBuffer[(String, Int)]()
+        var line = lines.next()
+        while (line.startsWith(ScoredNetworkSink.thresholdPrefix + " ")) {
+          val fields = line.split(" ")
+          thresholds += ((fields(1), fields(2).toInt))
+          //the header line follows the index
+          line = lines.next()
+        }
+
+        val count = label match {
+          case Some(l) => thresholds.find(_._1 == l).getOrElse(throw new IllegalArgumentException("%s has no threshold %s".format(filename, l)))._2
+          case None => Int.MaxValue
+        }
+        val edges = lines.take(count).map(line => {
+          val first = line.indexOf(' ')
+          val second = line.indexOf(' ', first + 1)
+          (line.substring(0, first), line.substring(first + 1, second), line.substring(second + 1).toDouble)
+        }).to[ArrayBuffer]
+        Some(new ScoredNetwork(thresholds, edges))
+      } finally {
+        source.close()
+      }
+    }
+  }
+
+  private def open(filename: String) = {
+    if (filename.endsWith(".gz")) Source.fromInputStream(new GZIPInputStream(new FileInputStream(filename)))(codec) else Source.fromFile(filename)(codec)
+  }
+
+  //A "VALUE" lines, as of COMMENTS and AUTHORS files
+  def readQuoted(filename: String): Option[ArrayBuffer[(String, String)]] = {
+    readLines(filename).map(_.map(line => {
+      val separator = line.indexOf(' ')
+      (line.substring(0, separator), line.substring(separator + 2, line.length - 1))
+    }))
+  }
+
+}
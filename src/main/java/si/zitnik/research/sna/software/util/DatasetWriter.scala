@@ -5,6 +5,8 @@ import java.io.{FileWriter, File, BufferedWriter}
 import java.nio.file._
 import java.nio.charset.Charset
 import scala.collection.JavaConversions._
+import si.zitnik.research.sna.software.enum.{GraphFormat, NetworkFormat}
+import si.zitnik.research.sna.software.network._
 
 /**
  * Created with IntelliJ IDEA.
@@ -14,12 +16,38 @@ import scala.collection.JavaConversions._
  * To change this template use File | Settings | File Templates.
  */
 object DatasetWriter {
+  //written by the AsyncOutput thread, gzipped when filename ends with .gz
   def writeLines(filename: String, lines: ArrayBuffer[String], headerLine: String = "#") {
     //Files.write(Paths.get(filename), lines, Charset.forName("utf-8"), StandardOpenOption.WRITE)
-    val bw = new BufferedWriter(new FileWriter(new File(filename)))
+    val bw = AsyncOutput.open(filename)
     bw.write(headerLine); bw.newLine();
     lines.foreach(v => {bw.write(v); bw.newLine()})
     bw.close()
   }
 
+  //Network file of name, without its extension, in format; maxWeight > 0 keeps the scores of a binary network
+  def networkSink(name: String, format: NetworkFormat.Value = NetworkFormat.TEXT, maxWeight: Double = 0): EdgeSink = {
+    format match {
+      case NetworkFormat.TEXT => new FileEdgeSink(networkFile(name, format))
+      case NetworkFormat.BINARY => new BinaryEdgeSink(networkFile(name, format), maxWeight)
+      case NetworkFormat.SCORED => throw new IllegalArgumentException("Scored networks are written per measure, see scoredNetworkSink")
+    }
+  }
+
+  //Scored network file of name, without its extension, holding the networks of all thresholds of a measure
+  def scoredNetworkSink(name: String, thresholds: Seq[(String, Double)], tolerance: Double = 0) = {
+    new ScoredNetworkSink(networkFile(name, NetworkFormat.SCORED), thresholds, tolerance)
+  }
+
+  //Network file of name, without its extension, for graph tools; vertices carry the attributes where the format has them
+  def graphSink(name: String, format: GraphFormat.Value, attributes: Seq[(String, String => String)] = Seq()): EdgeSink = {
+    format match {
+      case GraphFormat.PAJEK => new PajekEdgeSink(name + ".net", attributes)
+      case GraphFormat.GRAPHML => new GraphMLEdgeSink(name + ".graphml", attributes)
+      case GraphFormat.GEXF => new GexfEdgeSink(name + ".gexf", attributes)
+    }
+  }
+
+  def networkFile(name: String, format: NetworkFormat.Value) = name + (if (format == NetworkFormat.BINARY) ".bin" else ".txt")
+
 }
@@ -0,0 +1,140 @@
+package si.zitnik.research.sna.software.util
+
+import si.zitnik.research.sna.software.enum.CommentKind
+
+//Comments of a source file as spans of the raw text, a comment becomes a String only when asked for
+class CommentSpans(source: CharSequence) {
+  private var spans = new Array[Int](3 * 64)
+  private var count = 0
+
+  private[util] def add(kind: CommentKind.Value, start: Int, end: Int) {
+    if (3 * count == spans.length) {
+      spans = java.util.Arrays.copyOf(spans, spans.length * 2)
+    }
+    spans(3 * count) = kind.id
+    spans(3 * count + 1) = start
+    spans(3 * count + 2) = end
+    count += 1
+  }
+
+  def size = count
+
+  def kind(k: Int) = CommentKind(spans(3 * k))
+
+  //the comment text is source(start until end), without the comment delimiters
+  def start(k: Int) = spans(3 * k + 1)
+
+  def end(k: Int) = spans(3 * k + 2)
+
+  def text(k: Int) = source.subSequence(start(k), end(k)).toString
+
+}
+
+//Single pass state machine over Java source finding block, Javadoc and line comments.
+//String and char literals are skipped and unicode escapes are decoded as the compiler does, before lexing.
+object JavaCommentLexer {
+  private final val Code = 0
+  private final val StringLiteral = 1
+  private final val CharLiteral = 2
+  private final val BlockComment = 3
+  private final val LineComment = 4
+
+  def scan(source: CharSequence): CommentSpans = {
+    val retVal = new CommentSpans(source)
+    val length = source.length()
+
+    //width of the (possibly escaped) character at raw position p
+    def widthAt(p: Int): Int = {
+      if (source.charAt(p) != '\\' || p + 1 >= length || source.charAt(p + 1) != 'u') {
+        1
+      } else {
+        //eligible only after an even number of backslashes
+        var backslashes = 0
+        while (p - backslashes - 1 >= 0 && source.charAt(p - backslashes - 1) == '\\') {
+          backslashes += 1
+        }
+        var q = p + 1
+        while (q < length && source.charAt(q) == 'u') {
+          q += 1
+        }
+        if (backslashes % 2 == 0 && q + 4 <= length && (q until q + 4).forall(k => Character.digit(source.charAt(k), 16) >= 0)) {
+          q + 4 - p
+        } else {
+          1
+        }
+      }
+    }
+
+    def charAt(p: Int, width: Int): Char = {
+      if (width == 1) source.charAt(p) else Integer.parseInt(source.subSequence(p + width - 4, p + width).toString, 16).toChar
+    }
+
+    //decoded character at raw position p, -1 past the end
+    def decodedAt(p: Int): Int = if (p < length) charAt(p, widthAt(p)) else -1
+
+    var state = Code
+    var kind = CommentKind.BLOCK
+    var commentStart = 0
+    var p = 0
+    while (p < length) {
+      val width = widthAt(p)
+      val c = charAt(p, width)
+      val next = p + width
+      p = next
+
+      state match {
+        case Code => {
+          if (c == '"') {
+            state = StringLiteral
+          } else if (c == '\'') {
+            state = CharLiteral
+          } else if (c == '/') {
+            val nextC = decodedAt(next)
+            if (nextC == '/') {
+              state = LineComment
+              p = next + widthAt(next)
+              commentStart = p
+            } else if (nextC == '*') {
+              state = BlockComment
+              p = next + widthAt(next)
+              commentStart = p
+              //  /**/ is an empty block comment, not a Javadoc one
+              kind = if (decodedAt(p) == '*' && decodedAt(p + widthAt(p)) != '/') CommentKind.JAVADOC else CommentKind.BLOCK
+            }
+          }
+        }
+        case StringLiteral | CharLiteral => {
+          if (c == '\\') {
+            //skip the escaped character
+            if (p < length) {
+              p += widthAt(p)
+            }
+          } else if ((c == '"' && state == StringLiteral) || (c == '\'' && state == CharLiteral) || c == '\n') {
+            state = Code
+          }
+        }
+        case BlockComment => {
+          if (c == '*' && decodedAt(p) == '/') {
+            retVal.add(kind, commentStart, p - width)
+            p += widthAt(p)
+            state = Code
+          }
+        }
+        case LineComment => {
+          if (c == '\n' || c == '\r') {
+            retVal.add(CommentKind.LINE, commentStart, p - width)
+            state = Code
+          }
+        }
+      }
+    }
+
+    //a line comment may end the file, an unterminated block comment is dropped
+    if (state == LineComment) {
+      retVal.add(CommentKind.LINE, commentStart, length)
+    }
+
+    retVal
+  }
+
+}
@@ -0,0 +1,132 @@
+package si.zitnik.research.sna.software.util
+
+//Reads the package declaration from the start of a Java source, past comments, whitespace and package annotations.
+//Scanning stops at the package name or at the first other token, so the rest of the file is never read.
+object JavaHeaderScanner {
+
+  //package name without whitespace, None for the default package
+  def scanPackage(source: CharSequence): Option[String] = {
+    val length = source.length()
+    var p = skipByteOrderMark(source)
+
+    def at(k: Int) = if (k < length) source.charAt(k) else '\u0000'
+
+    def startsWith(k: Int, word: String) = {
+      k + word.length <= length && (0 until word.length).forall(i => source.charAt(k + i) == word.charAt(i))
+    }
+
+    def skipTrivia() {
+      var skipped = true
+      while (skipped) {
+        skipped = false
+        while (p < length && Character.isWhitespace(source.charAt(p))) {
+          p += 1
+          skipped = true
+        }
+        if (at(p) == '/' && at(p + 1) == '/') {
+          while (p < length && source.charAt(p) != '\n' && source.charAt(p) != '\r') {
+            p += 1
+          }
+          skipped = true
+        } else if (at(p) == '/' && at(p + 1) == '*') {
+          p += 2
+          while (p < length && !(source.charAt(p) == '*' && at(p + 1) == '/')) {
+            p += 1
+          }
+          p = math.min(length, p + 2)
+          skipped = true
+        }
+      }
+    }
+
+    def identifier(): String = {
+      val start = p
+      if (p < length && Character.isJavaIdentifierStart(source.charAt(p))) {
+        p += 1
+        while (p < length && Character.isJavaIdentifierPart(source.charAt(p))) {
+          p += 1
+        }
+      }
+      source.subSequence(start, p).toString
+    }
+
+    //dot separated identifiers, null if there is none
+    def qualifiedName(): String = {
+      val retVal = new java.lang.StringBuilder(identifier())
+      if (retVal.length == 0) {
+        return null
+      }
+      skipTrivia()
+      while (at(p) == '.') {
+        p += 1
+        skipTrivia()
+        val part = identifier()
+        if (part.isEmpty) {
+          return null
+        }
+        retVal.append('.').append(part)
+        skipTrivia()
+      }
+      retVal.toString
+    }
+
+    //parenthesized annotation arguments, string and char literals may hold parentheses
+    def skipArguments() {
+      var depth = 0
+      do {
+        at(p) match {
+          case '(' => depth += 1
+          case ')' => depth -= 1
+          case quote@('"' | '\'') => {
+            p += 1
+            while (p < length && source.charAt(p) != quote && source.charAt(p) != '\n') {
+              p += (if (source.charAt(p) == '\\') 2 else 1)
+            }
+          }
+          case '/' if at(p + 1) == '/' || at(p + 1) == '*' => {
+            skipTrivia()
+            p -= 1
+          }
+          case _ =>
+        }
+        p += 1
+      } while (depth > 0 && p < length)
+    }
+
+    skipTrivia()
+    //annotations of package-info.java come before the declaration
+    while (at(p) == '@' && !startsWith(p + 1, "interface")) {
+      p += 1
+      skipTrivia()
+      if (qualifiedName() == null) {
+        return None
+      }
+      if (at(p) == '(') {
+        skipArguments()
+        skipTrivia()
+      }
+    }
+
+    if (startsWith(p, "package") && !Character.isJavaIdentifierPart(at(p + "package".length))) {
+      p += "package".length
+      skipTrivia()
+      val name = qualifiedName()
+      if (name != null && at(p) == ';') {
+        return Some(name)
+      }
+    }
+    None
+  }
+
+  //UTF-8 byte order mark, read either as UTF-8 or as latin1
+  private def skipByteOrderMark(source: CharSequence) = {
+    if (source.length() > 0 && source.charAt(0) == 0xFEFF) {
+      1
+    } else if (source.length() > 2 && source.charAt(0) == 0xEF && source.charAt(1) == 0xBB && source.charAt(2) == 0xBF) {
+      3
+    } else {
+      0
+    }
+  }
+
+}
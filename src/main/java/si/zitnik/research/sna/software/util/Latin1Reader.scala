@@ -0,0 +1,112 @@
+package si.zitnik.research.sna.software.util
+
+import java.io.{EOFException, InputStream}
+import java.nio.ByteBuffer
+import java.nio.channels.ReadableByteChannel
+import java.nio.file.{Files, Path}
+
+//Latin1 text of one source file at a time, decoded into a reused char buffer: a byte is a char, so nothing else is allocated.
+//Line terminators read as in getLines().mkString("\n"): \r\n and \r become \n and the one ending the last line is dropped.
+//The text is valid until the next file is read, subSequence and toString copy out what has to be kept.
+//The bytes of a file are loaded into a reused byte buffer first, see SourceEntry.read, and decoded by decode().
+class Latin1Reader extends CharSequence {
+  private var buffer = new Array[Char](1 << 16)
+  private var count = 0
+  private var bytes = ByteBuffer.allocate(1 << 16)
+
+  //bulk read of the whole file, of a directory or of a zip file system
+  def load(path: Path) {
+    val channel = Files.newByteChannel(path)
+    try {
+      load(channel, channel.size())
+    } finally {
+      channel.close()
+    }
+  }
+
+  def load(channel: ReadableByteChannel, size: Long) {
+    reserve(size)
+    while (bytes.hasRemaining && channel.read(bytes) >= 0) {}
+    bytes.flip()
+  }
+
+  //the next size bytes of in
+  def load(in: InputStream, size: Long) {
+    reserve(size)
+    while (bytes.hasRemaining) {
+      val read = in.read(bytes.array(), bytes.position(), bytes.remaining())
+      if (read < 0) {
+        throw new EOFException()
+      }
+      bytes.position(bytes.position() + read)
+    }
+    bytes.flip()
+  }
+
+  private def reserve(size: Long) {
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("File too large: %d bytes".format(size))
+    }
+    if (bytes.capacity() < size) {
+      bytes = ByteBuffer.allocate(math.max(size.toInt, 2 * bytes.capacity()))
+    }
+    bytes.clear()
+    bytes.limit(size.toInt)
+  }
+
+  //FNV-1a of the loaded bytes, see CorpusCache.contentHash
+  def contentHash = CorpusCache.contentHash(bytes.array(), 0, bytes.limit())
+
+  //text of the loaded bytes
+  def decode(): CharSequence = decode(bytes.array(), 0, bytes.limit())
+
+  def decode(content: Array[Byte]): CharSequence = decode(content, 0, content.length)
+
+  def decode(content: Array[Byte], offset: Int, length: Int): CharSequence = {
+    if (buffer.length < length) {
+      buffer = new Array[Char](math.max(length, 2 * buffer.length))
+    }
+
+    var w = 0
+    var r = offset
+    val end = offset + length
+    while (r < end) {
+      val b = content(r)
+      if (b == '\r') {
+        buffer(w) = '\n'
+        if (r + 1 < end && content(r + 1) == '\n') {
+          r += 1
+        }
+      } else {
+        buffer(w) = (b & 0xff).toChar
+      }
+      w += 1
+      r += 1
+    }
+    if (w > 0 && buffer(w - 1) == '\n') {
+      w -= 1
+    }
+    count = w
+
+    this
+  }
+
+  def length() = count
+
+  def charAt(index: Int) = {
+    if (index >= count) {
+      throw new IndexOutOfBoundsException(index.toString)
+    }
+    buffer(index)
+  }
+
+  def subSequence(start: Int, end: Int): CharSequence = {
+    if (start < 0 || end > count || start > end) {
+      throw new IndexOutOfBoundsException("%d, %d".format(start, end))
+    }
+    new String(buffer, start, end - start)
+  }
+
+  override def toString = new String(buffer, 0, count)
+
+}
@@ -0,0 +1,81 @@
+package si.zitnik.research.sna.software.util
+
+import collection.mutable
+import collection.mutable.ArrayBuffer
+
+//Aho-Corasick automaton over literal markers, finds all occurrences of all markers in one pass over a text.
+//Transitions are a dense table over the characters of the markers, any other character leads back to the root.
+class MarkerAutomaton(val markers: IndexedSeq[String]) {
+  require(markers.forall(!_.isEmpty), "Empty marker")
+
+  //column of every marker character, 0 for all other characters
+  private val latin1Columns = new Array[Int](256)
+  private val otherColumns = mutable.HashMap[Char, Int]()
+  private val columnCount = {
+    var count = 1
+    markers.flatten.distinct.foreach(c => {
+      if (c < 256) {
+        latin1Columns(c) = count
+      } else {
+        otherColumns(c) = count
+      }
+      count += 1
+    })
+    count
+  }
+
+  private def column(c: Char) = if (c < 256) latin1Columns(c) else otherColumns.getOrElse(c, 0)
+
+  //trie of the markers, state 0 is the root
+  private val (transitions, outputs) = {
+    val trie = ArrayBuffer(Array.fill(columnCount)(-1))
+    val own = ArrayBuffer(ArrayBuffer[Int]())
+    markers.zipWithIndex.foreach({ case (marker, id) => {
+      var state = 0
+      marker.foreach(c => {
+        if (trie(state)(column(c)) < 0) {
+          trie(state)(column(c)) = trie.size
+          trie += Array.fill(columnCount)(-1)
+          own += ArrayBuffer[Int]()
+        }
+        state = trie(state)(column(c))
+      })
+      own(state) += id
+    }})
+
+    //breadth first, missing transitions follow the failure link and outputs include those of the failure state
+    val fail = new Array[Int](trie.size)
+    val queue = mutable.Queue[Int]()
+    for (c <- 0 until columnCount) {
+      if (trie(0)(c) < 0) {
+        trie(0)(c) = 0
+      } else {
+        fail(trie(0)(c)) = 0
+        queue.enqueue(trie(0)(c))
+      }
+    }
+    while (queue.nonEmpty) {
+      val state = queue.dequeue()
+      own(state) ++= own(fail(state))
+      for (c <- 0 until columnCount) {
+        val next = trie(state)(c)
+        if (next < 0) {
+          trie(state)(c) = trie(fail(state))(c)
+        } else {
+          fail(next) = trie(fail(state))(c)
+          queue.enqueue(next)
+        }
+      }
+    }
+
+    (trie.flatten.toArray, own.map(_.toArray).toArray)
+  }
+
+  def initialState = 0
+
+  def next(state: Int, c: Char) = transitions(state * columnCount + column(c))
+
+  //ids of the markers ending at the character that led to state, longest first
+  def matches(state: Int): Array[Int] = outputs(state)
+
+}
@@ -3,6 +3,7 @@ package si.zitnik.research.sna.software.util
 import util.matching.Regex
 import com.typesafe.scalalogging.slf4j.{Logger, Logging}
 import collection.mutable.ArrayBuffer
+import si.zitnik.research.sna.software.enum.CommentKind
 
 /**
  * Created with IntelliJ IDEA.
@@ -14,18 +15,9 @@ import collection.mutable.ArrayBuffer
 object SoftwareFileUtil extends Logging {
 
 
-  def extractPackage(fileSource: String): String = {
-    //val r = new Regex(""".*^package\s+(.*)\s*;\s*$.*""", "package")
-    val r = new Regex(""".*package\s+(.*)\s*;.*""", "package")
-
-    r.findFirstIn(fileSource) match {
-      case Some(r(p)) => p;
-      case None => {
-        logger.error("No package found for source\n%s".format(fileSource))
-        System.exit(-1)
-        ""
-      }
-    }
+  //declared package, empty for the default package
+  def extractPackage(fileSource: CharSequence): String = {
+    JavaHeaderScanner.scanPackage(fileSource).getOrElse("")
   }
 
   /*
@@ -48,87 +40,90 @@ object SoftwareFileUtil extends Logging {
     filename.replaceAll(".*/", "").stripSuffix(".java")
   }
 
-  def extractAuthor(fileSource: String): String = {
-    //val r = new Regex(""".*[Created by |@author]\s+([a-zA-Z ]+)$.*""", "author")
-    //val r = new Regex(""".*(Java port of Bullet \(c\) 2008|Copyright \(c\) 2009,|Copyright \(c\) 2009-2011,|User:|Created by|author)\s+([a-zA-Z @\.]+).*""", "x","author")
-    val r = new Regex(""".*(User:|author)\s+([:<=\">/a-zA-Z @\.0-9]+).*""", "x","author")
+  //name after the first author marker of the rules, UNKNOWN if there is none
+  def extractAuthor(fileSource: CharSequence, rules: AuthorRules = AuthorRules.defaults): String = {
+    rules.extractAuthor(fileSource)
+  }
 
-    var res = r.findFirstIn(fileSource) match {
-      case Some(r(x, p)) => p;
-      case None => {
-        //logger.error("**********************************\n"*10)
-        //logger.error("No author found for source\n%s".format(fileSource))
-        //System.exit(-1)
-        "UNKNOWN"
-      }
-    }
 
-    if (res.equals("UNKNOWN")) {
-      val r1 = new Regex(""".*(Copyright \(c\) 2001-2009|Java port of Bullet \(c\) 2008|Copyright \(c\) 2009,|Copyright \(c\) 2009-2011,|User:|Created by|author)\s+([:<=\">/a-zA-Z @\.0-9]+).*""", "x","author")
-
-      res = r1.findFirstIn(fileSource) match {
-        case Some(r1(x, p)) => p;
-        case None => {
-          //logger.error("**********************************\n"*10)
-          //logger.error("No author found for source\n%s".format(fileSource))
-          //System.exit(-1)
-          "UNKNOWN"
-        }
+  def extractImports(fileSource: CharSequence): Seq[String] = {
+    extractImports(fileSource, JavaCommentLexer.scan(fileSource))
+  }
+
+  //import declarations outside the comments of spans, an import in commented out code or Javadoc is none
+  def extractImports(fileSource: CharSequence, spans: CommentSpans): Seq[String] = {
+    val r = new Regex("""(?m)^\s*import\s+(static\s+)?([\w\.\*]+)\s*;""", "static", "import")
+
+    //matches and spans are both ascending
+    var k = 0
+    r.findAllMatchIn(fileSource).filter(m => {
+      val p = m.start(2)
+      while (k < spans.size && spans.end(k) <= p) {
+        k += 1
       }
-    }
+      k == spans.size || spans.start(k) > p
+    }).map(_.group("import")).toList
+  }
 
-    res
+
+  private def ignoreComment(comment: String): Boolean = {
+    CommentNormalizer.ignoredPrefixes.exists(comment.startsWith(_))
   }
 
+  private def processComment(comment: String, retVal: ArrayBuffer[String]) {
+    val c = comment.toLowerCase().
+      replaceAll("\\*", "").
+      replaceAll("@param [a-zA-Z]*", "").
+      replaceAll("@return [a-zA-Z]*", "").
+      replaceAll("@since [a-zA-Z\\.0-9]*", "").
+      replaceAll("(?s)\\s*(@author|author|user|created|@created).*$", "").
+      replaceAll("--- end license block ---", "").
+      replaceAll("--- begin license block ---", "").
+      replaceAll("\\s+", " ").
+      trim
+
+    if (!ignoreComment(c)) {
+      retVal.append(c)
+    }
+  }
 
-  def extractComments(fileSource: String): String = {
-    val retVal = ArrayBuffer[String]()
+  //Comments found by JavaCommentLexer, so // inside string literals is not a comment.
+  //Block and Javadoc comments come first and line comments after them, as in extractCommentsRegex.
+  def extractComments(fileSource: CharSequence): String = {
+    extractComments(fileSource, JavaCommentLexer.scan(fileSource))
+  }
 
-    val ignore = (comment: String) => {
-      if (comment.startsWith("user:") ||
-          comment.startsWith("author") ||
-          comment.startsWith("@author") ||
-        comment.startsWith("created") ||
-        comment.startsWith("@created") ||
-        comment.startsWith("copyright") ||
-        comment.startsWith("java port of bullet") ||
-        comment.startsWith("jblas - light-weight wrapper for atlas and lapack (http://www.jblas.org) copyright") ||
-        comment.startsWith("licensed to the apache software foundation") ||
-      comment.startsWith("=========================================================================== (c) copyright") ||
-      comment.startsWith("do not alter or remove copyright notices or this file header") ||
-      comment.startsWith("(c) copyright") ||
-      comment.startsWith("portions copyright") ||
-      comment.startsWith("licensed materials") ||
-      comment.startsWith("this file is available under and governed by the gnu general public license")) {
-        true
-      } else {
-        false
+  def extractComments(fileSource: CharSequence, spans: CommentSpans): String = {
+    val retVal = new java.lang.StringBuilder()
+    val normalizer = new CommentNormalizer()
+    var count = 0
+
+    for {
+      lines <- Seq(false, true)
+      k <- 0 until spans.size
+      if (spans.kind(k) == CommentKind.LINE) == lines
+      if normalizer.normalize(fileSource, spans.start(k), spans.end(k))
+    } {
+      if (count > 0) {
+        retVal.append(' ')
       }
-    }: Boolean
-
-    val processComment = (comment: String) => {
-        val c = comment.toLowerCase().
-        replaceAll("\\*", "").
-        replaceAll("@param [a-zA-Z]*", "").
-        replaceAll("@return [a-zA-Z]*", "").
-        replaceAll("@since [a-zA-Z\\.0-9]*", "").
-        replaceAll("(?s)\\s*(@author|author|user|created|@created).*$", "").
-        replaceAll("--- end license block ---", "").
-        replaceAll("--- begin license block ---", "").
-        replaceAll("\\s+", " ").
-        trim
-
-        if (!ignore(c)) {
-          retVal.append(c)
-        }
+      normalizer.appendTo(retVal)
+      count += 1
     }
 
+    retVal.toString
+  }
+
+  //Former regex extraction, kept for comparison with extractComments
+  def extractCommentsRegex(fileSource: String): String = {
+    val retVal = ArrayBuffer[String]()
+
     //block comments
     var r = new Regex("""(?s)/\*(.*?)\*/""", "comment")
-    r.findAllMatchIn(fileSource).foreach(m => processComment(m.group("comment")))
+    r.findAllMatchIn(fileSource).foreach(m => processComment(m.group("comment"), retVal))
     //line
     r = new Regex("""\s+//(.*)""", "comment")
-    r.findAllMatchIn(fileSource).foreach(m => processComment(m.group("comment")))
+    r.findAllMatchIn(fileSource).foreach(m => processComment(m.group("comment"), retVal))
 
     //println(fileSource)
     //println(retVal.mkString(" "))
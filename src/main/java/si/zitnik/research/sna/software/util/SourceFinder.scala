@@ -1,9 +1,11 @@
 package si.zitnik.research.sna.software.util
 
-import java.nio.file.Files
-import java.io.{FilenameFilter, File}
+import java.nio.file._
+import java.nio.file.attribute.BasicFileAttributes
+import java.io.{File, IOException, Closeable}
+import java.util.concurrent.{ForkJoinTask, RecursiveAction, ForkJoinPool, TimeUnit, LinkedBlockingQueue}
 import collection.mutable.ArrayBuffer
-import si.zitnik.research.sna.software.model.SoftwareFile
+import scala.collection.JavaConversions._
 
 /**
  * Created with IntelliJ IDEA.
@@ -12,24 +14,192 @@ import si.zitnik.research.sna.software.model.SoftwareFile
  * Time: 6:38 PM
  * To change this template use File | Settings | File Templates.
  */
-object SourceFinder {
+//Source files of a directory tree, the filesystem SourceProvider
+object SourceFinder extends SourceProvider {
+  //paths queued ahead of a slow consumer
+  val queueCapacity = 4096
 
   def findFiles(contentRoot: String, fileType: String = ".java"): ArrayBuffer[String] = {
-    val retVal = ArrayBuffer[String]()
-    val file = new File(contentRoot)
+    val files = streamFiles(contentRoot, Seq("**" + fileType))
+    try {
+      files.to[ArrayBuffer]
+    } finally {
+      files.close()
+    }
+  }
+
+  //Files under contentRoot matching an include and no exclude glob (relative to contentRoot, an excluded directory is skipped whole).
+  //Paths are yielded while the walk goes on; the sequential walk keeps directory order, the parallel one does not.
+  def streamFiles(contentRoot: String, includes: Seq[String] = Seq("**.java"), excludes: Seq[String] = Seq(), parallel: Boolean = false): SourceIterator = {
+    streamPaths(Paths.get(contentRoot), includes, excludes, parallel)
+  }
+
+  //as streamFiles, for a root of any file system
+  private[util] def streamPaths(root: Path, includes: Seq[String], excludes: Seq[String], parallel: Boolean = false): SourceIterator = {
+    val fileSystem = root.getFileSystem
+    val iterator = new SourceIterator(
+      includes.map(glob => fileSystem.getPathMatcher("glob:" + glob)),
+      excludes.map(glob => fileSystem.getPathMatcher("glob:" + glob)))
+
+    val walker = new Thread(new Runnable {
+      def run() {
+        try {
+          if (parallel) {
+            iterator.walkParallel(root)
+          } else {
+            iterator.walk(root)
+          }
+        } catch {
+          case e: Throwable => iterator.fail(e)
+        } finally {
+          iterator.finish()
+        }
+      }
+    }, "SourceFinder " + root)
+    walker.setDaemon(true)
+    walker.start()
+
+    iterator
+  }
+
+  def streamEntries(location: String, includes: Seq[String], excludes: Seq[String]): SourceEntries = {
+    val files = streamFiles(location, includes, excludes)
+    new SourceEntries {
+      def hasNext = files.hasNext
 
-    if (file.isDirectory) {
-      val files = file.list()
-      for (subFile <- files) {
-        retVal ++= findFiles("%s/%s".format(contentRoot,subFile))
+      def next() = {
+        val path = files.next()
+        val file = new File(path)
+        new SourceEntry(path, file.length(), file.lastModified()) {
+          def read(reader: Latin1Reader) {
+            reader.load(file.toPath)
+          }
+        }
       }
 
-    } else if (file.getName().endsWith(fileType)) {
-      retVal += contentRoot
+      def close() {
+        files.close()
+      }
+    }
+  }
+
+  class SourceIterator private[SourceFinder](includes: Seq[PathMatcher], excludes: Seq[PathMatcher]) extends Iterator[String] with Closeable {
+    private val End = "\u0000"
+
+    private val queue = new LinkedBlockingQueue[String](queueCapacity)
+    @volatile private var closed = false
+    @volatile private var failure: Throwable = null
+    private var nextPath: String = null
+
+    //the root itself is matched by its name
+    private def relative(root: Path, path: Path) = if (path == root) path.getFileName else root.relativize(path)
+
+    private def excluded(relativePath: Path) = relativePath != null && excludes.exists(_.matches(relativePath))
+
+    private def included(relativePath: Path) = relativePath != null && includes.exists(_.matches(relativePath)) && !excluded(relativePath)
+
+    //blocks while the queue is full, gives up once the consumer closed the iterator
+    private def offer(path: String) = {
+      while (!closed && !queue.offer(path, 100, TimeUnit.MILLISECONDS)) {}
+      !closed
     }
 
+    private[SourceFinder] def walk(root: Path) {
+      Files.walkFileTree(root, java.util.EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor[Path] {
+        override def preVisitDirectory(dir: Path, attrs: BasicFileAttributes) = {
+          if (closed) {
+            FileVisitResult.TERMINATE
+          } else if (dir != root && excluded(root.relativize(dir))) {
+            FileVisitResult.SKIP_SUBTREE
+          } else {
+            FileVisitResult.CONTINUE
+          }
+        }
 
-    retVal
+        override def visitFile(file: Path, attrs: BasicFileAttributes) = {
+          if (!included(relative(root, file)) || offer(file.toString)) {
+            FileVisitResult.CONTINUE
+          } else {
+            FileVisitResult.TERMINATE
+          }
+        }
+      })
+    }
+
+    //one fork-join task per directory
+    private[SourceFinder] def walkParallel(root: Path) {
+      if (!Files.isDirectory(root)) {
+        walk(root)
+      } else {
+        val pool = new ForkJoinPool(Runtime.getRuntime.availableProcessors())
+        try {
+          pool.invoke(new DirectoryTask(root, root))
+        } finally {
+          pool.shutdown()
+        }
+      }
+    }
+
+    private class DirectoryTask(root: Path, dir: Path) extends RecursiveAction {
+      def compute() {
+        val subTasks = ArrayBuffer[DirectoryTask]()
+        val stream = Files.newDirectoryStream(dir)
+        try {
+          for (path <- stream.iterator() if !closed) {
+            val relativePath = root.relativize(path)
+            if (Files.isDirectory(path)) {
+              if (!excluded(relativePath)) {
+                subTasks += new DirectoryTask(root, path)
+              }
+            } else if (included(relativePath)) {
+              offer(path.toString)
+            }
+          }
+        } finally {
+          stream.close()
+        }
+        ForkJoinTask.invokeAll(subTasks)
+      }
+    }
+
+    private[SourceFinder] def fail(e: Throwable) {
+      failure = e
+    }
+
+    private[SourceFinder] def finish() {
+      while (!closed && !queue.offer(End, 100, TimeUnit.MILLISECONDS)) {}
+    }
+
+    def hasNext = {
+      if (closed) {
+        nextPath = End
+      } else if (nextPath == null) {
+        nextPath = queue.take()
+      }
+      if (nextPath == End) {
+        if (failure != null) {
+          throw new IOException("Walk failed", failure)
+        }
+        false
+      } else {
+        true
+      }
+    }
+
+    def next() = {
+      if (!hasNext) {
+        throw new NoSuchElementException()
+      }
+      val retVal = nextPath
+      nextPath = null
+      retVal
+    }
+
+    //stops the walk, e.g. when the consumer does not read all paths
+    def close() {
+      closed = true
+      queue.clear()
+    }
   }
 
 }
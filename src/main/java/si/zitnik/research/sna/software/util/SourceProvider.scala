@@ -0,0 +1,36 @@
+package si.zitnik.research.sna.software.util
+
+import java.io.Closeable
+
+//A source file found by a SourceProvider, its bytes are read only when asked for
+abstract class SourceEntry(val path: String, val size: Long, val lastModified: Long) {
+  //loads the bytes of the file into the reused buffer of reader, an entry of a streamed archive can be read only until
+  //the next entry
+  def read(reader: Latin1Reader)
+}
+
+trait SourceEntries extends Iterator[SourceEntry] with Closeable
+
+//Source files of a project location, a directory tree or an archive of one
+trait SourceProvider {
+  //entries matching an include and no exclude glob, relative to the root of the location
+  def streamEntries(location: String, includes: Seq[String] = Seq("**.java"), excludes: Seq[String] = Seq()): SourceEntries
+}
+
+object SourceProvider {
+
+  def apply(location: String): SourceProvider = {
+    val name = location.toLowerCase
+    if (name.endsWith(".zip") || name.endsWith(".jar")) {
+      ZipSourceProvider
+    } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+      TarSourceProvider
+    } else {
+      SourceFinder
+    }
+  }
+
+  //path of an archive entry, as in jar URLs
+  def entryPath(archive: String, entry: String) = archive + "!/" + entry.stripPrefix("/")
+
+}
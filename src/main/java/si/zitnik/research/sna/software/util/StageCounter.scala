@@ -0,0 +1,32 @@
+package si.zitnik.research.sna.software.util
+
+import java.util.concurrent.atomic.AtomicLong
+
+//Items and busy time of one stage of a pipeline, summed over the threads of the stage
+class StageCounter(val name: String, val threads: Int = 1) {
+  private val items = new AtomicLong()
+  private val nanos = new AtomicLong()
+
+  def time[T](work: => T): T = {
+    val start = System.nanoTime()
+    try {
+      work
+    } finally {
+      nanos.addAndGet(System.nanoTime() - start)
+    }
+  }
+
+  def count() {
+    items.incrementAndGet()
+  }
+
+  def itemCount = items.get()
+
+  def busyMillis = nanos.get() / 1000000
+
+  //items per second of one thread, the stage with the most busy time per thread is the bottleneck
+  def throughput = items.get() * 1e9 / math.max(nanos.get(), 1)
+
+  override def toString = "%s %d in %d ms on %d thread(s) (%.0f/s)".format(name, itemCount, busyMillis, threads, throughput)
+
+}
@@ -0,0 +1,160 @@
+package si.zitnik.research.sna.software.util
+
+import java.io.{EOFException, BufferedInputStream, DataInputStream, FileInputStream}
+import java.nio.file.FileSystems
+import java.nio.charset.Charset
+import java.util.zip.GZIPInputStream
+
+//Source files of a tar.gz archive, read in one pass through the decompressed stream.
+//Only the entry being read is held in memory, entries that are not read are skipped through a fixed buffer.
+object TarSourceProvider extends SourceProvider {
+  private val BlockSize = 512
+  private val BufferSize = 1 << 16
+
+  private val utf8 = Charset.forName("utf-8")
+
+  def streamEntries(location: String, includes: Seq[String], excludes: Seq[String]): SourceEntries = {
+    val fileSystem = FileSystems.getDefault
+    val includeMatchers = includes.map(glob => fileSystem.getPathMatcher("glob:" + glob))
+    val excludeMatchers = excludes.map(glob => fileSystem.getPathMatcher("glob:" + glob))
+    val matches = (name: String) => {
+      val path = fileSystem.getPath(name)
+      includeMatchers.exists(_.matches(path)) && !excludeMatchers.exists(_.matches(path))
+    }
+
+    new TarEntries(location, matches)
+  }
+
+  private class TarEntries(location: String, matches: String => Boolean) extends SourceEntries {
+    private val in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(location), BufferSize), BufferSize))
+    private val header = new Array[Byte](BlockSize)
+    private val skipBuffer = new Array[Byte](BufferSize)
+
+    //bytes of the current entry and its padding not read yet
+    private var remaining = 0L
+    private var entryCount = 0
+    private var pending: SourceEntry = null
+    private var finished = false
+
+    def hasNext = {
+      if (pending == null && !finished) {
+        pending = readEntry()
+        finished = pending == null
+      }
+      pending != null
+    }
+
+    def next() = {
+      if (!hasNext) {
+        throw new NoSuchElementException()
+      }
+      val retVal = pending
+      pending = null
+      retVal
+    }
+
+    def close() {
+      finished = true
+      in.close()
+    }
+
+    private def skip(count: Long) {
+      var left = count
+      while (left > 0) {
+        val read = in.read(skipBuffer, 0, math.min(left, skipBuffer.length).toInt)
+        if (read < 0) {
+          throw new EOFException("Truncated archive " + location)
+        }
+        left -= read
+      }
+    }
+
+    private def padded(size: Long) = (size + BlockSize - 1) / BlockSize * BlockSize
+
+    private def readBytes(size: Long) = {
+      val retVal = new Array[Byte](size.toInt)
+      in.readFully(retVal)
+      skip(padded(size) - size)
+      retVal
+    }
+
+    private def string(offset: Int, length: Int) = {
+      var end = offset
+      while (end < offset + length && header(end) != 0) {
+        end += 1
+      }
+      new String(header, offset, end - offset, utf8)
+    }
+
+    //octal, or base-256 when the first byte has its high bit set
+    private def number(offset: Int, length: Int) = {
+      var retVal = 0L
+      if ((header(offset) & 0x80) != 0) {
+        retVal = header(offset) & 0x7f
+        for (k <- offset + 1 until offset + length) {
+          retVal = (retVal << 8) | (header(k) & 0xff)
+        }
+      } else {
+        for (k <- offset until offset + length if header(k) >= '0' && header(k) <= '7') {
+          retVal = retVal * 8 + (header(k) - '0')
+        }
+      }
+      retVal
+    }
+
+    //path of a pax extended header, null when it has none
+    private def paxPath(records: Array[Byte]) = {
+      new String(records, utf8).split("\n").map(record => record.substring(record.indexOf(' ') + 1)).find(_.startsWith("path=")).map(_.stripPrefix("path=")).orNull
+    }
+
+    //next regular file matching the globs, null at the end of the archive
+    private def readEntry(): SourceEntry = {
+      skip(remaining)
+      remaining = 0
+
+      //names of GNU long name and pax headers apply to the next entry
+      var longName: String = null
+      while (true) {
+        val read = in.read(header)
+        if (read < 0 || (read == BlockSize && header.forall(_ == 0))) {
+          return null
+        }
+        if (read < BlockSize) {
+          in.readFully(header, read, BlockSize - read)
+        }
+
+        val size = number(124, 12)
+        val kind = header(156).toChar
+        val ustarPrefix = if (string(257, 5) == "ustar") string(345, 155) else ""
+        val name = if (longName != null) longName else if (ustarPrefix.isEmpty) string(0, 100) else ustarPrefix + "/" + string(0, 100)
+        val relativeName = name.stripPrefix("./").stripPrefix("/")
+
+        kind match {
+          case 'L' => longName = new String(readBytes(size), utf8).takeWhile(_ != 0)
+          case 'x' => longName = paxPath(readBytes(size))
+          case '0' | '\u0000' | '7' if matches(relativeName) => {
+            remaining = padded(size)
+            entryCount += 1
+            val entryId = entryCount
+            return new SourceEntry(SourceProvider.entryPath(location, relativeName), size, number(136, 12) * 1000) {
+              def read(reader: Latin1Reader) {
+                if (entryId != entryCount || remaining != padded(size)) {
+                  throw new IllegalStateException("Entry %s was passed or read already".format(path))
+                }
+                remaining = 0
+                reader.load(in, size)
+                skip(padded(size) - size)
+              }
+            }
+          }
+          case _ => {
+            longName = null
+            skip(padded(size))
+          }
+        }
+      }
+      null
+    }
+  }
+
+}
@@ -0,0 +1,32 @@
+package si.zitnik.research.sna.software.util
+
+import java.nio.file.{FileSystems, Files, Paths}
+
+//Source files of a zip or jar archive, walked through the zip file system like a directory tree by SourceFinder.
+//Entries are inflated one at a time when read, the archive is never unpacked.
+object ZipSourceProvider extends SourceProvider {
+
+  def streamEntries(location: String, includes: Seq[String], excludes: Seq[String]): SourceEntries = {
+    val fileSystem = FileSystems.newFileSystem(Paths.get(location), null: ClassLoader)
+    val files = SourceFinder.streamPaths(fileSystem.getPath("/"), includes, excludes)
+
+    new SourceEntries {
+      def hasNext = files.hasNext
+
+      def next() = {
+        val file = fileSystem.getPath(files.next())
+        new SourceEntry(SourceProvider.entryPath(location, file.toString), Files.size(file), Files.getLastModifiedTime(file).toMillis) {
+          def read(reader: Latin1Reader) {
+            reader.load(file)
+          }
+        }
+      }
+
+      def close() {
+        files.close()
+        fileSystem.close()
+      }
+    }
+  }
+
+}